@@ -0,0 +1,361 @@
+package main.pathfinder;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Compressed path database over the open tiles of a MazeProblem that never
+ * changes, answering "which way from here toward there" with a lookup instead
+ * of a search. A Dijkstra from every open tile records the optimal first moves
+ * toward every other tile; each tile's row of first moves, taken in target
+ * order, is then run-length encoded. Neighboring targets tend to share a first
+ * move, so rows shrink to a handful of runs, and a query is a binary search
+ * within one row. Following first moves one lookup at a time walks an optimal
+ * path.
+ * <p>
+ * The database's size is tuned by the order its targets are numbered in and by
+ * whether runs may exploit ties between optimal first moves; the number of
+ * threads it is built on tunes only its build time (each thread adds its own
+ * search space while building, which is freed once the build is done).
+ */
+public class CompressedPathDatabase {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    private static final int ANY_MOVE = (1 << MazeGrid.ACTIONS.length) - 1;
+
+    /**
+     * Orders in which the open tiles are numbered, which is the order every row
+     * of first moves is encoded in. Queries are answered the same either way;
+     * only the number of runs, and so the database's size, differs.
+     */
+    public enum Ordering {
+        /** Row by row, left to right; breaks each corridor that runs down the maze
+         *  into one tile per row */
+        ROW_MAJOR,
+        /** Depth-first from the first open tile of each region, stepping in ACTIONS
+         *  order, so that tiles along one corridor are numbered one after another
+         *  and tend to fall in the same run */
+        DEPTH_FIRST
+    }
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final MazeGrid grid;
+    private final MazeComponents components;
+    private final int[] nodeOf, cellOf;
+    private final int[] neighbors;
+    private final byte[] cost;
+    private final int[] rowStart, runs;
+    private final long buildNanos;
+
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Builds the database of the given MazeProblem on every available core,
+     * numbering its tiles depth-first and exploiting ties between optimal first
+     * moves, which together make for the fewest runs.
+     *
+     * @param problem The MazeProblem whose open tiles are to be indexed.
+     */
+    public CompressedPathDatabase (MazeProblem problem) {
+        this(problem, Runtime.getRuntime().availableProcessors(), true, Ordering.DEPTH_FIRST);
+    }
+
+    /**
+     * Builds the database of the given MazeProblem.
+     *
+     * @param problem The MazeProblem whose open tiles are to be indexed.
+     * @param parallelism The number of threads that run the per-tile Dijkstras.
+     * @param exploitTies Whether a run may cover any target for which its move is
+     * one of several optimal first moves (and any target that cannot be reached at
+     * all); this shrinks the database considerably, at no cost to queries. If not,
+     * every target is given a single canonical first move before encoding: the
+     * first of its optimal first moves in ACTIONS order, or the first action for
+     * the source and for targets that cannot be reached.
+     * @param ordering The order in which tiles are numbered, and so in which every
+     * row is encoded.
+     */
+    public CompressedPathDatabase (MazeProblem problem, int parallelism, boolean exploitTies, Ordering ordering) {
+        long started = System.nanoTime();
+        grid = new MazeGrid(problem);
+        components = problem.getComponents();
+        nodeOf = new int[grid.size()];
+        Arrays.fill(nodeOf, -1);
+        int n = 0;
+        int[] stack = new int[grid.size()];
+        for (int root = 0; root < grid.size(); root++) {
+            if (!grid.isOpen(root) || nodeOf[root] >= 0) { continue; }
+            if (ordering == Ordering.ROW_MAJOR) {
+                nodeOf[root] = n++;
+                continue;
+            }
+            // Numbered as it is popped; neighbors are pushed in reverse, so that
+            // the first action is taken first
+            int top = 0;
+            stack[top++] = root;
+            while (top > 0) {
+                int cell = stack[--top];
+                if (nodeOf[cell] >= 0) { continue; }
+                nodeOf[cell] = n++;
+                for (int d = MazeGrid.ACTIONS.length - 1; d >= 0; d--) {
+                    int next = grid.neighbor(cell, d);
+                    if (next >= 0 && nodeOf[next] < 0) {
+                        if (top == stack.length) { stack = Arrays.copyOf(stack, top * 2); }
+                        stack[top++] = next;
+                    }
+                }
+            }
+        }
+        cellOf = new int[n];
+        cost = new byte[n];
+        int maxCost = 1;
+        for (int cell = 0; cell < grid.size(); cell++) {
+            if (nodeOf[cell] >= 0) {
+                cellOf[nodeOf[cell]] = cell;
+                cost[nodeOf[cell]] = (byte) grid.cost(cell);
+                maxCost = Math.max(maxCost, grid.cost(cell));
+            }
+        }
+        int moves = MazeGrid.ACTIONS.length;
+        neighbors = new int[moves * n];
+        for (int node = 0; node < n; node++) {
+            for (int d = 0; d < moves; d++) {
+                int next = grid.neighbor(cellOf[node], d);
+                neighbors[moves * node + d] = (next < 0) ? -1 : nodeOf[next];
+            }
+        }
+
+        // One Dijkstra and one encoded row per source, spread over the pool
+        int nodes = n, buckets = maxCost + 1;
+        int[][] rows = new int[n][];
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(nodes, buckets));
+        ForkJoinPool pool = new ForkJoinPool(Math.max(parallelism, 1));
+        try {
+            pool.submit(() -> IntStream.range(0, nodes).parallel().forEach(source -> {
+                Scratch sc = scratch.get();
+                search(source, sc);
+                rows[source] = encode(source, sc, exploitTies);
+            })).join();
+        } finally {
+            pool.shutdown();
+        }
+
+        rowStart = new int[n + 1];
+        for (int node = 0; node < n; node++) {
+            rowStart[node + 1] = rowStart[node] + rows[node].length;
+        }
+        runs = new int[rowStart[n]];
+        for (int node = 0; node < n; node++) {
+            System.arraycopy(rows[node], 0, runs, rowStart[node], rows[node].length);
+        }
+        buildNanos = System.nanoTime() - started;
+    }
+
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Looks up the first move of a cheapest path between the two given states.
+     *
+     * @param from The MazeState to start from.
+     * @param to The MazeState to reach.
+     * @return The action to take (one of "U", "D", "L", "R"), or null if the two
+     * states are the same, or there is no path between them.
+     */
+    public String nextMove (MazeState from, MazeState to) {
+        int s = nodeAt(from), t = nodeAt(to);
+        if (s < 0 || t < 0 || s == t || !components.isConnected(from, to)) { return null; }
+        return MazeGrid.ACTIONS[firstMove(s, t)];
+    }
+
+    /**
+     * Returns the cheapest sequence of actions between the two given states, one
+     * first-move lookup per action.
+     *
+     * @param from The MazeState to start from.
+     * @param to The MazeState to reach.
+     * @return A List of Strings representing actions that lead from one state to
+     * the other, of the format: ["R", "R", "L", ...], or null if there is none
+     */
+    public List<String> query (MazeState from, MazeState to) {
+        int s = nodeAt(from), t = nodeAt(to);
+        if (s < 0 || t < 0 || !components.isConnected(from, to)) { return null; }
+        List<String> actions = new ArrayList<>();
+        for (int node = s; node != t; ) {
+            int d = firstMove(node, t);
+            actions.add(MazeGrid.ACTIONS[d]);
+            node = neighbors[MazeGrid.ACTIONS.length * node + d];
+        }
+        return actions;
+    }
+
+    /**
+     * @return The number of runs stored, over every row.
+     */
+    public int getRunCount () {
+        return runs.length;
+    }
+
+    /**
+     * @return The time spent building this database, in milliseconds.
+     */
+    public long getBuildMillis () {
+        return buildNanos / 1_000_000;
+    }
+
+    /**
+     * @return The approximate size of this database's index arrays, in bytes.
+     */
+    public long getIndexBytes () {
+        return 4L * (nodeOf.length + cellOf.length + neighbors.length + rowStart.length + runs.length) + cost.length;
+    }
+
+    /**
+     * @return The index into ACTIONS of the first move from one node toward another.
+     */
+    private int firstMove (int s, int t) {
+        // The last run of the row that starts at or before the target
+        int low = rowStart[s], high = rowStart[s + 1] - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if ((runs[mid] >>> 2) <= t) { low = mid; } else { high = mid - 1; }
+        }
+        return runs[low] & 3;
+    }
+
+    /**
+     * Runs a Dijkstra from the given source over every open tile, leaving in the
+     * scratch space the set of optimal first moves toward each tile it reached, as
+     * a bitmask over ACTIONS. Tile costs are small, so the queue is a ring of
+     * buckets, one per distance, rather than a heap (Dial's algorithm).
+     */
+    private void search (int source, Scratch sc) {
+        int moves = MazeGrid.ACTIONS.length, ring = sc.bucket.length;
+        sc.round++;
+        sc.reached[source] = sc.round;
+        sc.settled[source] = sc.round;
+        sc.dist[source] = 0;
+        sc.firstMoves[source] = 0;
+        int pending = 0;
+        for (int d = 0; d < moves; d++) {
+            int next = neighbors[moves * source + d];
+            if (next < 0) { continue; }
+            sc.reached[next] = sc.round;
+            sc.dist[next] = cost[next];
+            sc.firstMoves[next] = (byte) (1 << d);
+            sc.push(sc.dist[next] % ring, next);
+            pending++;
+        }
+        for (int distance = 1; pending > 0; distance++) {
+            int b = distance % ring;
+            while (sc.size[b] > 0) {
+                int node = sc.bucket[b][--sc.size[b]];
+                pending--;
+                if (sc.settled[node] == sc.round || sc.dist[node] != distance) { continue; }
+                sc.settled[node] = sc.round;
+                for (int d = 0; d < moves; d++) {
+                    int next = neighbors[moves * node + d];
+                    if (next < 0 || sc.settled[next] == sc.round) { continue; }
+                    int newDist = distance + cost[next];
+                    if (sc.reached[next] != sc.round || newDist < sc.dist[next]) {
+                        sc.reached[next] = sc.round;
+                        sc.dist[next] = newDist;
+                        sc.firstMoves[next] = sc.firstMoves[node];
+                        sc.push(newDist % ring, next);
+                        pending++;
+                    } else if (newDist == sc.dist[next]) {
+                        sc.firstMoves[next] |= sc.firstMoves[node];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Run-length encodes the first moves that the last search from the given source
+     * left in the scratch space. Each run is packed as (first target &lt;&lt; 2 | move).
+     * A run grows for as long as some single move is optimal toward every target in
+     * it, the source itself and unreachable targets being wildcards; unless ties
+     * are exploited, every target is first narrowed to its canonical move.
+     */
+    private int[] encode (int source, Scratch sc, boolean exploitTies) {
+        int length = 0, runStart = 0, allowed = ANY_MOVE;
+        for (int t = 0; t < cellOf.length; t++) {
+            int moves = (t == source || sc.reached[t] != sc.round) ? ANY_MOVE : sc.firstMoves[t];
+            if (!exploitTies) {
+                moves = Integer.lowestOneBit(moves);
+            }
+            if ((allowed & moves) == 0) {
+                length = sc.emit(length, runStart, Integer.numberOfTrailingZeros(allowed));
+                runStart = t;
+                allowed = moves;
+            } else {
+                allowed &= moves;
+            }
+        }
+        length = sc.emit(length, runStart, Integer.numberOfTrailingZeros(allowed));
+        return Arrays.copyOf(sc.row, length);
+    }
+
+    /**
+     * @return The node at the given state, or -1 if it is not an open tile.
+     */
+    private int nodeAt (MazeState state) {
+        int cell = grid.cellOf(state);
+        return (cell < 0) ? -1 : nodeOf[cell];
+    }
+
+
+    // Scratch
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Per-thread search and encoding space, stamped with the search it belongs to
+     * so that it never needs clearing between sources.
+     */
+    private static class Scratch {
+
+        int[] dist, reached, settled;
+        byte[] firstMoves;
+        int[][] bucket;
+        int[] size;
+        int[] row = new int[64];
+        int round;
+
+        Scratch (int n, int buckets) {
+            dist = new int[n];
+            reached = new int[n];
+            settled = new int[n];
+            firstMoves = new byte[n];
+            bucket = new int[buckets][16];
+            size = new int[buckets];
+        }
+
+        void push (int b, int node) {
+            if (size[b] == bucket[b].length) {
+                bucket[b] = Arrays.copyOf(bucket[b], size[b] * 2);
+            }
+            bucket[b][size[b]++] = node;
+        }
+
+        /**
+         * Appends a run to the row being encoded.
+         *
+         * @return The new length of the row.
+         */
+        int emit (int length, int start, int move) {
+            if (length == row.length) {
+                row = Arrays.copyOf(row, length * 2);
+            }
+            row[length] = (start << 2) | move;
+            return length + 1;
+        }
+
+    }
+
+}
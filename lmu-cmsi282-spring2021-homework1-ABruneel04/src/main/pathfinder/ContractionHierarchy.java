@@ -0,0 +1,466 @@
+package main.pathfinder;
+
+import java.util.*;
+
+/**
+ * Contraction hierarchy over the open tiles of a MazeProblem that never changes,
+ * for answering many point-to-point queries between arbitrary tiles. Tiles are
+ * contracted one at a time in order of importance; whenever the cheapest way
+ * between two remaining neighbors of a contracted tile ran through it, a shortcut
+ * arc remembering that middle tile is added between them. A query is then a
+ * bidirectional Dijkstra that only ever climbs to more important tiles, and the
+ * shortcuts on the path it finds are unpacked back into single moves.
+ */
+public class ContractionHierarchy {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    private static final int WITNESS_SETTLE_LIMIT = 64;
+    private static final int PRIORITY_OFFSET = 1 << 20;
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final MazeGrid grid;
+    private final int[] nodeOf, cellOf, rank;
+    private final int[] upStart, upTarget, upCost, upMid;
+    private final int[] downStart, downSource, downCost, downMid;
+    private final int shortcuts;
+    private final long buildNanos;
+    private final ThreadLocal<Scratch> scratch;
+
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Builds the contraction hierarchy of the given MazeProblem. Tiles are ordered
+     * by edge difference (shortcuts a contraction would add, less the arcs it would
+     * remove), plus the number of neighbors already contracted and the depth of the
+     * hierarchy beneath the tile, updated lazily as the contraction proceeds.
+     * Witness searches are capped at WITNESS_SETTLE_LIMIT settled tiles, so a few
+     * unnecessary shortcuts may be added, but never too few.
+     *
+     * @param problem The MazeProblem whose open tiles are to be indexed.
+     */
+    public ContractionHierarchy (MazeProblem problem) {
+        long started = System.nanoTime();
+        grid = new MazeGrid(problem);
+        nodeOf = new int[grid.size()];
+        int n = 0;
+        for (int cell = 0; cell < grid.size(); cell++) {
+            nodeOf[cell] = grid.isOpen(cell) ? n++ : -1;
+        }
+        cellOf = new int[n];
+        for (int cell = 0; cell < grid.size(); cell++) {
+            if (nodeOf[cell] >= 0) { cellOf[nodeOf[cell]] = cell; }
+        }
+
+        Overlay overlay = new Overlay(n);
+        for (int node = 0; node < n; node++) {
+            for (int d = 0; d < MazeGrid.ACTIONS.length; d++) {
+                int next = grid.neighbor(cellOf[node], d);
+                if (next >= 0) { overlay.addEdge(node, nodeOf[next], grid.cost(next), -1); }
+            }
+        }
+
+        // Contract in order of (lazily updated) priority
+        rank = new int[n];
+        LongHeap queue = new LongHeap();
+        for (int node = 0; node < n; node++) {
+            queue.push(LongHeap.pack(overlay.priority(node) + PRIORITY_OFFSET, node));
+        }
+        int order = 0, added = 0;
+        while (!queue.isEmpty()) {
+            int node = LongHeap.id(queue.pop());
+            if (overlay.contracted[node]) { continue; }
+            int priority = overlay.priority(node) + PRIORITY_OFFSET;
+            if (!queue.isEmpty() && priority > LongHeap.cost(queue.peek())) {
+                queue.push(LongHeap.pack(priority, node));
+                continue;
+            }
+            added += overlay.contract(node, false);
+            overlay.contracted[node] = true;
+            rank[node] = order++;
+            for (int i = 0; i < overlay.outSize[node]; i++) {
+                int next = overlay.outTo[node][i];
+                overlay.deleted[next]++;
+                overlay.level[next] = Math.max(overlay.level[next], overlay.level[node] + 1);
+            }
+        }
+        shortcuts = added;
+
+        // Split every arc into the upward graph of its lower end (searched forward)
+        // or the downward graph of its lower end (searched backward)
+        upStart = new int[n + 1];
+        downStart = new int[n + 1];
+        for (int u = 0; u < n; u++) {
+            for (int i = 0; i < overlay.outSize[u]; i++) {
+                int w = overlay.outTo[u][i];
+                if (rank[w] > rank[u]) { upStart[u + 1]++; } else { downStart[w + 1]++; }
+            }
+        }
+        for (int node = 0; node < n; node++) {
+            upStart[node + 1] += upStart[node];
+            downStart[node + 1] += downStart[node];
+        }
+        upTarget = new int[upStart[n]];
+        upCost = new int[upStart[n]];
+        upMid = new int[upStart[n]];
+        downSource = new int[downStart[n]];
+        downCost = new int[downStart[n]];
+        downMid = new int[downStart[n]];
+        int[] upFill = Arrays.copyOf(upStart, n), downFill = Arrays.copyOf(downStart, n);
+        for (int u = 0; u < n; u++) {
+            for (int i = 0; i < overlay.outSize[u]; i++) {
+                int w = overlay.outTo[u][i];
+                if (rank[w] > rank[u]) {
+                    upTarget[upFill[u]] = w;
+                    upCost[upFill[u]] = overlay.outCost[u][i];
+                    upMid[upFill[u]++] = overlay.outMid[u][i];
+                } else {
+                    downSource[downFill[w]] = u;
+                    downCost[downFill[w]] = overlay.outCost[u][i];
+                    downMid[downFill[w]++] = overlay.outMid[u][i];
+                }
+            }
+        }
+        int nodes = n;
+        scratch = ThreadLocal.withInitial(() -> new Scratch(nodes));
+        buildNanos = System.nanoTime() - started;
+    }
+
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Returns the cost of the cheapest path between the two given states.
+     *
+     * @param from The MazeState to start from.
+     * @param to The MazeState to reach.
+     * @return The cost of the cheapest path, or -1 if there is none.
+     */
+    public int getDistance (MazeState from, MazeState to) {
+        int s = nodeAt(from), t = nodeAt(to);
+        if (s < 0 || t < 0) { return -1; }
+        Scratch sc = scratch.get();
+        return search(s, t, sc) < 0 ? -1 : sc.best;
+    }
+
+    /**
+     * Returns the cheapest sequence of actions between the two given states.
+     *
+     * @param from The MazeState to start from.
+     * @param to The MazeState to reach.
+     * @return A List of Strings representing actions that lead from one state to
+     * the other, of the format: ["R", "R", "L", ...], or null if there is none
+     */
+    public List<String> query (MazeState from, MazeState to) {
+        int s = nodeAt(from), t = nodeAt(to);
+        if (s < 0 || t < 0) { return null; }
+        Scratch sc = scratch.get();
+        int meet = search(s, t, sc);
+        if (meet < 0) { return null; }
+
+        // Collect the arcs of both halves as (from, to) pairs in walking order
+        Deque<int[]> arcs = new ArrayDeque<>();
+        for (int node = meet; node != s; node = sc.forwardParent[node]) {
+            arcs.addFirst(new int[] {sc.forwardParent[node], node, upMid[sc.forwardVia[node]]});
+        }
+        for (int node = meet; node != t; node = sc.backwardParent[node]) {
+            arcs.addLast(new int[] {node, sc.backwardParent[node], downMid[sc.backwardVia[node]]});
+        }
+
+        // Unpack each shortcut (a, b via m) into (a, m) and (m, b) until only
+        // single moves remain
+        int[] cells = new int[16];
+        int length = 0;
+        cells[length++] = cellOf[s];
+        Deque<int[]> stack = new ArrayDeque<>();
+        for (int[] arc : arcs) {
+            stack.push(arc);
+            while (!stack.isEmpty()) {
+                int[] top = stack.pop();
+                if (top[2] < 0) {
+                    if (length == cells.length) { cells = Arrays.copyOf(cells, length * 2); }
+                    cells[length++] = cellOf[top[1]];
+                } else {
+                    stack.push(new int[] {top[2], top[1], midOf(top[2], top[1])});
+                    stack.push(new int[] {top[0], top[2], midOf(top[0], top[2])});
+                }
+            }
+        }
+        return grid.actionsOf(cells, length);
+    }
+
+    /**
+     * @return The number of shortcut arcs added by contraction.
+     */
+    public int getShortcutCount () {
+        return shortcuts;
+    }
+
+    /**
+     * @return The time spent building this hierarchy, in milliseconds.
+     */
+    public long getBuildMillis () {
+        return buildNanos / 1_000_000;
+    }
+
+    /**
+     * @return The approximate size of this hierarchy's index arrays, in bytes.
+     */
+    public long getIndexBytes () {
+        return 4L * (nodeOf.length + cellOf.length + rank.length + upStart.length + downStart.length +
+                     3L * upTarget.length + 3L * downSource.length) + grid.size();
+    }
+
+    /**
+     * Runs the bidirectional upward search between the two given nodes, leaving
+     * the cost of the cheapest path found in the scratch space.
+     *
+     * @return The node at which the two searches met, or -1 if they never did.
+     */
+    private int search (int s, int t, Scratch sc) {
+        sc.round++;
+        sc.best = Integer.MAX_VALUE;
+        LongHeap forward = sc.forward, backward = sc.backward;
+        forward.clear();
+        backward.clear();
+        sc.reach(sc.forwardDist, sc.forwardRound, s, 0);
+        sc.reach(sc.backwardDist, sc.backwardRound, t, 0);
+        forward.push(LongHeap.pack(0, s));
+        backward.push(LongHeap.pack(0, t));
+        int meet = -1;
+
+        while (!forward.isEmpty() || !backward.isEmpty()) {
+            if (!forward.isEmpty() && LongHeap.cost(forward.peek()) >= sc.best) { forward.clear(); }
+            if (!forward.isEmpty()) {
+                long entry = forward.pop();
+                int node = LongHeap.id(entry), dist = LongHeap.cost(entry);
+                if (dist == sc.forwardDist[node]) {
+                    if (sc.backwardRound[node] == sc.round && dist + sc.backwardDist[node] < sc.best) {
+                        sc.best = dist + sc.backwardDist[node];
+                        meet = node;
+                    }
+                    for (int i = upStart[node]; i < upStart[node + 1]; i++) {
+                        int next = upTarget[i], newDist = dist + upCost[i];
+                        if (sc.reach(sc.forwardDist, sc.forwardRound, next, newDist)) {
+                            sc.forwardParent[next] = node;
+                            sc.forwardVia[next] = i;
+                            forward.push(LongHeap.pack(newDist, next));
+                        }
+                    }
+                }
+            }
+            if (!backward.isEmpty() && LongHeap.cost(backward.peek()) >= sc.best) { backward.clear(); }
+            if (!backward.isEmpty()) {
+                long entry = backward.pop();
+                int node = LongHeap.id(entry), dist = LongHeap.cost(entry);
+                if (dist == sc.backwardDist[node]) {
+                    if (sc.forwardRound[node] == sc.round && dist + sc.forwardDist[node] < sc.best) {
+                        sc.best = dist + sc.forwardDist[node];
+                        meet = node;
+                    }
+                    for (int i = downStart[node]; i < downStart[node + 1]; i++) {
+                        int next = downSource[i], newDist = dist + downCost[i];
+                        if (sc.reach(sc.backwardDist, sc.backwardRound, next, newDist)) {
+                            sc.backwardParent[next] = node;
+                            sc.backwardVia[next] = i;
+                            backward.push(LongHeap.pack(newDist, next));
+                        }
+                    }
+                }
+            }
+        }
+        return meet;
+    }
+
+    /**
+     * @return The middle node of the arc from a to b, or -1 if it is a single move.
+     */
+    private int midOf (int a, int b) {
+        if (rank[b] > rank[a]) {
+            for (int i = upStart[a]; i < upStart[a + 1]; i++) {
+                if (upTarget[i] == b) { return upMid[i]; }
+            }
+        } else {
+            for (int i = downStart[b]; i < downStart[b + 1]; i++) {
+                if (downSource[i] == a) { return downMid[i]; }
+            }
+        }
+        throw new IllegalStateException("No arc from " + a + " to " + b);
+    }
+
+    /**
+     * @return The node of the given state, or -1 if it is not an open tile.
+     */
+    private int nodeAt (MazeState state) {
+        int cell = grid.cellOf(state);
+        return (cell < 0) ? -1 : nodeOf[cell];
+    }
+
+    /**
+     * Mutable arc lists of the graph while it is being contracted, along with the
+     * scratch space of its witness searches.
+     */
+    private static class Overlay {
+
+        int[][] outTo, outCost, outMid, inFrom, inCost;
+        int[] outSize, inSize, deleted, level, dist, round;
+        boolean[] contracted;
+        int rounds;
+        LongHeap heap = new LongHeap();
+
+        Overlay (int n) {
+            outTo = new int[n][4];
+            outCost = new int[n][4];
+            outMid = new int[n][4];
+            inFrom = new int[n][4];
+            inCost = new int[n][4];
+            outSize = new int[n];
+            inSize = new int[n];
+            deleted = new int[n];
+            level = new int[n];
+            dist = new int[n];
+            round = new int[n];
+            contracted = new boolean[n];
+        }
+
+        /**
+         * Adds the arc u -&gt; w, or lowers the cost of the existing one if the
+         * new arc is cheaper.
+         */
+        void addEdge (int u, int w, int cost, int mid) {
+            for (int i = 0; i < outSize[u]; i++) {
+                if (outTo[u][i] != w) { continue; }
+                if (cost < outCost[u][i]) {
+                    outCost[u][i] = cost;
+                    outMid[u][i] = mid;
+                    for (int j = 0; j < inSize[w]; j++) {
+                        if (inFrom[w][j] == u) { inCost[w][j] = cost; }
+                    }
+                }
+                return;
+            }
+            if (outSize[u] == outTo[u].length) {
+                outTo[u] = Arrays.copyOf(outTo[u], outSize[u] * 2);
+                outCost[u] = Arrays.copyOf(outCost[u], outSize[u] * 2);
+                outMid[u] = Arrays.copyOf(outMid[u], outSize[u] * 2);
+            }
+            outTo[u][outSize[u]] = w;
+            outCost[u][outSize[u]] = cost;
+            outMid[u][outSize[u]++] = mid;
+            if (inSize[w] == inFrom[w].length) {
+                inFrom[w] = Arrays.copyOf(inFrom[w], inSize[w] * 2);
+                inCost[w] = Arrays.copyOf(inCost[w], inSize[w] * 2);
+            }
+            inFrom[w][inSize[w]] = u;
+            inCost[w][inSize[w]++] = cost;
+        }
+
+        /**
+         * @return The edge difference of contracting the given node right now.
+         */
+        int priority (int v) {
+            int removed = 0;
+            for (int i = 0; i < outSize[v]; i++) { if (!contracted[outTo[v][i]]) { removed++; } }
+            for (int i = 0; i < inSize[v]; i++) { if (!contracted[inFrom[v][i]]) { removed++; } }
+            return 2 * (contract(v, true) - removed) + deleted[v] + level[v];
+        }
+
+        /**
+         * Contracts the given node, adding a shortcut u -&gt; w through it for
+         * every pair of remaining neighbors with no witness path at least as cheap.
+         *
+         * @param simulate If true, only counts the shortcuts that would be added.
+         * @return The number of shortcuts added (or that would be).
+         */
+        int contract (int v, boolean simulate) {
+            int added = 0;
+            for (int i = 0; i < inSize[v]; i++) {
+                int u = inFrom[v][i], viaCost = inCost[v][i], limit = -1;
+                if (contracted[u]) { continue; }
+                for (int j = 0; j < outSize[v]; j++) {
+                    int w = outTo[v][j];
+                    if (!contracted[w] && w != u) { limit = Math.max(limit, viaCost + outCost[v][j]); }
+                }
+                if (limit < 0) { continue; }
+                witness(u, v, limit);
+                for (int j = 0; j < outSize[v]; j++) {
+                    int w = outTo[v][j], via = viaCost + outCost[v][j];
+                    if (contracted[w] || w == u || (round[w] == rounds && dist[w] <= via)) { continue; }
+                    added++;
+                    if (!simulate) { addEdge(u, w, via, v); }
+                }
+            }
+            return added;
+        }
+
+        /**
+         * Dijkstra from u that avoids v and every contracted node, stopping past
+         * the given cost or once WITNESS_SETTLE_LIMIT nodes have been settled.
+         */
+        private void witness (int u, int v, int limit) {
+            rounds++;
+            heap.clear();
+            dist[u] = 0;
+            round[u] = rounds;
+            heap.push(LongHeap.pack(0, u));
+            for (int settled = 0; !heap.isEmpty() && settled < WITNESS_SETTLE_LIMIT; settled++) {
+                long entry = heap.pop();
+                int node = LongHeap.id(entry), d = LongHeap.cost(entry);
+                if (d > limit) { return; }
+                if (d > dist[node]) { continue; }
+                for (int i = 0; i < outSize[node]; i++) {
+                    int next = outTo[node][i], newDist = d + outCost[node][i];
+                    if (next == v || contracted[next]) { continue; }
+                    if (round[next] != rounds || newDist < dist[next]) {
+                        round[next] = rounds;
+                        dist[next] = newDist;
+                        heap.push(LongHeap.pack(newDist, next));
+                    }
+                }
+            }
+        }
+
+    }
+
+    /**
+     * Per-thread scratch space of the query search, reset between queries by
+     * bumping a round counter instead of clearing its arrays.
+     */
+    private static class Scratch {
+
+        int[] forwardDist, forwardRound, forwardParent, forwardVia;
+        int[] backwardDist, backwardRound, backwardParent, backwardVia;
+        int round, best;
+        LongHeap forward = new LongHeap(), backward = new LongHeap();
+
+        Scratch (int n) {
+            forwardDist = new int[n];
+            forwardRound = new int[n];
+            forwardParent = new int[n];
+            forwardVia = new int[n];
+            backwardDist = new int[n];
+            backwardRound = new int[n];
+            backwardParent = new int[n];
+            backwardVia = new int[n];
+        }
+
+        /**
+         * Records the given distance to the given node if it beats the one known
+         * this round.
+         *
+         * @return true if the distance was recorded, false otherwise
+         */
+        boolean reach (int[] dist, int[] rounds, int node, int newDist) {
+            if (rounds[node] == round && dist[node] <= newDist) { return false; }
+            rounds[node] = round;
+            dist[node] = newDist;
+            return true;
+        }
+
+    }
+
+}
@@ -0,0 +1,196 @@
+package main.pathfinder;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+/**
+ * Goal bounds over the junction graph of a MazeProblem that never changes: for
+ * every arc, the bounding box of every node that some cheapest path from the
+ * arc's junction reaches by leaving along that arc. A search heading for a
+ * target may then skip every arc whose box does not hold the target, since the
+ * arc starts no cheapest path there. Boxes are built with one Dijkstra per
+ * junction, run in parallel, and cost four ints per arc.
+ */
+public class GoalBounds {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    private static final int EMPTY_MIN = Integer.MAX_VALUE, EMPTY_MAX = Integer.MIN_VALUE;
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final JunctionGraph graph;
+    private final int[] minCol, maxCol, minRow, maxRow;
+    private final long buildNanos;
+
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Builds the goal bounds of the given MazeProblem on every available core.
+     *
+     * @param problem The MazeProblem whose junction graph is to be bounded.
+     */
+    public GoalBounds (MazeProblem problem) {
+        this(problem, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Builds the goal bounds of the given MazeProblem. A node reached equally
+     * cheaply along several arcs goes into the box of every one of them.
+     *
+     * @param problem The MazeProblem whose junction graph is to be bounded.
+     * @param parallelism The number of threads that run the per-junction Dijkstras.
+     */
+    public GoalBounds (MazeProblem problem, int parallelism) {
+        long started = System.nanoTime();
+        graph = new JunctionGraph(problem);
+        int arcs = graph.firstArc(graph.size());
+        minCol = new int[arcs];
+        maxCol = new int[arcs];
+        minRow = new int[arcs];
+        maxRow = new int[arcs];
+        Arrays.fill(minCol, EMPTY_MIN);
+        Arrays.fill(maxCol, EMPTY_MAX);
+        Arrays.fill(minRow, EMPTY_MIN);
+        Arrays.fill(maxRow, EMPTY_MAX);
+
+        // Each junction only ever writes the boxes of its own arcs
+        int nodes = graph.size();
+        ThreadLocal<Scratch> scratch = ThreadLocal.withInitial(() -> new Scratch(nodes));
+        ForkJoinPool pool = new ForkJoinPool(Math.max(parallelism, 1));
+        try {
+            pool.submit(() -> IntStream.range(0, nodes).parallel().forEach(node -> bound(node, scratch.get()))).join();
+        } finally {
+            pool.shutdown();
+        }
+        buildNanos = System.nanoTime() - started;
+    }
+
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * @return The junction graph that these bounds are over.
+     */
+    public JunctionGraph getGraph () {
+        return graph;
+    }
+
+    /**
+     * @param arc An arc id in the junction graph.
+     * @param node A node id in the junction graph.
+     * @return Whether the node lies within the box of the arc, i.e., whether the
+     * arc could start a cheapest path from its junction to the node.
+     */
+    public boolean contains (int arc, int node) {
+        int col = graph.getCol(node), row = graph.getRow(node);
+        return col >= minCol[arc] && col <= maxCol[arc] && row >= minRow[arc] && row <= maxRow[arc];
+    }
+
+    /**
+     * @param arc An arc id in the junction graph.
+     * @param nodes Node ids in the junction graph.
+     * @return Whether any of the nodes lies within the box of the arc.
+     */
+    public boolean containsAny (int arc, int[] nodes) {
+        for (int node : nodes) {
+            if (contains(arc, node)) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * @return The time spent building these bounds, in milliseconds.
+     */
+    public long getBuildMillis () {
+        return buildNanos / 1_000_000;
+    }
+
+    /**
+     * @return The approximate size of the boxes, in bytes.
+     */
+    public long getIndexBytes () {
+        return 16L * minCol.length;
+    }
+
+    /**
+     * Runs a Dijkstra from the given junction, tracking the set of its arcs that
+     * start a cheapest path to each node (as a bitmask over the junction's arcs,
+     * of which there are at most 4), and then grows the box of each arc by every
+     * node in whose set it is.
+     */
+    private void bound (int source, Scratch sc) {
+        int first = graph.firstArc(source);
+        sc.round++;
+        sc.heap.clear();
+        sc.reach(source, 0, 0);
+        sc.settled[source] = sc.round;
+        for (int arc = first; arc < graph.firstArc(source + 1); arc++) {
+            int next = graph.getTarget(arc);
+            sc.relax(next, graph.getCost(arc), 1 << (arc - first));
+        }
+        while (!sc.heap.isEmpty()) {
+            long entry = sc.heap.pop();
+            int node = LongHeap.id(entry), dist = LongHeap.cost(entry);
+            if (sc.settled[node] == sc.round || dist > sc.dist[node]) { continue; }
+            sc.settled[node] = sc.round;
+            int col = graph.getCol(node), row = graph.getRow(node);
+            for (int mask = sc.firstArcs[node]; mask != 0; mask &= mask - 1) {
+                int arc = first + Integer.numberOfTrailingZeros(mask);
+                minCol[arc] = Math.min(minCol[arc], col);
+                maxCol[arc] = Math.max(maxCol[arc], col);
+                minRow[arc] = Math.min(minRow[arc], row);
+                maxRow[arc] = Math.max(maxRow[arc], row);
+            }
+            for (int arc = graph.firstArc(node); arc < graph.firstArc(node + 1); arc++) {
+                int next = graph.getTarget(arc);
+                if (sc.settled[next] != sc.round) {
+                    sc.relax(next, dist + graph.getCost(arc), sc.firstArcs[node]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-thread Dijkstra space, reset between junctions by bumping a round
+     * counter instead of clearing its arrays.
+     */
+    private static class Scratch {
+
+        int[] dist, reached, settled, firstArcs;
+        int round;
+        LongHeap heap = new LongHeap();
+
+        Scratch (int n) {
+            dist = new int[n];
+            reached = new int[n];
+            settled = new int[n];
+            firstArcs = new int[n];
+        }
+
+        void reach (int node, int newDist, int arcs) {
+            reached[node] = round;
+            dist[node] = newDist;
+            firstArcs[node] = arcs;
+            heap.push(LongHeap.pack(newDist, node));
+        }
+
+        /**
+         * Offers the given cost to the given node, reached by a cheapest path that
+         * starts along any of the given arcs; equally cheap paths add their arcs.
+         */
+        void relax (int node, int newDist, int arcs) {
+            if (reached[node] != round || newDist < dist[node]) {
+                reach(node, newDist, arcs);
+            } else if (newDist == dist[node]) {
+                firstArcs[node] |= arcs;
+            }
+        }
+
+    }
+
+}
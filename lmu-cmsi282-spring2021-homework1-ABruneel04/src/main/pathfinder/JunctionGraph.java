@@ -0,0 +1,301 @@
+package main.pathfinder;
+
+import java.util.*;
+
+/**
+ * Weighted junction graph distilled from the grid of a MazeProblem. Every
+ * one-wide corridor is collapsed into a single arc whose cost is the summed
+ * cost of the tiles it enters, and every dead end that holds no key, goal, or
+ * initial state is pruned away. Arcs remember which way they leave their
+ * junction, so that the corridor can be walked again to expand a path found on
+ * the graph back into a full action list.
+ */
+public class JunctionGraph {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    private static final char[] ACTIONS = {'U', 'D', 'L', 'R'};
+    private static final int[] COL_MOD = { 0, 0, -1, 1},
+                               ROW_MOD = {-1, 1,  0, 0};
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final int cols;
+    private final boolean[] open;
+    private final int[] nodeOf, cellOf;
+    private final int[] arcStart, arcTarget, arcCost;
+    private final byte[] arcAction;
+
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Constructs the junction graph of the given MazeProblem. A tile becomes a
+     * node (junction) if it is the initial state, a key, a goal, or any open tile
+     * that is not in the middle of a corridor (i.e., does not have exactly 2 open
+     * neighbors once dead ends have been pruned).
+     *
+     * @param problem The MazeProblem whose grid is to be preprocessed.
+     */
+    public JunctionGraph (MazeProblem problem) {
+        int rows = problem.getRows();
+        this.cols = problem.getCols();
+        int size = rows * cols;
+        boolean[] pinned = new boolean[size];
+        this.open = new boolean[size];
+        int[] cost = new int[size], degree = new int[size];
+
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (!problem.isWall(col, row)) {
+                    open[row * cols + col] = true;
+                    cost[row * cols + col] = problem.getCost(col, row);
+                }
+            }
+        }
+        pin(problem.getInitial(), pinned);
+        for (MazeState goal : problem.getGoals()) {
+            pin(goal, pinned);
+        }
+        for (MazeState key : problem.getKeys()) {
+            pin(key, pinned);
+        }
+        for (int cell = 0; cell < size; cell++) {
+            if (open[cell]) {
+                for (int d = 0; d < ACTIONS.length; d++) {
+                    if (isOpen(open, cell, d)) { degree[cell]++; }
+                }
+            }
+        }
+
+        // Dead-end pruning: repeatedly remove unpinned tiles with at most one
+        // open neighbor; each tile is pushed at most once, when its degree
+        // first drops to 1 (or initially, if it starts at 0 or 1)
+        int[] stack = new int[size];
+        int top = 0;
+        for (int cell = 0; cell < size; cell++) {
+            if (open[cell] && !pinned[cell] && degree[cell] <= 1) {
+                stack[top++] = cell;
+            }
+        }
+        while (top > 0) {
+            int cell = stack[--top];
+            open[cell] = false;
+            for (int d = 0; d < ACTIONS.length; d++) {
+                if (isOpen(open, cell, d)) {
+                    int next = neighbor(cell, d);
+                    if (--degree[next] == 1 && !pinned[next]) {
+                        stack[top++] = next;
+                    }
+                }
+            }
+        }
+
+        // Junctions are whatever open tiles are not corridor tiles
+        nodeOf = new int[size];
+        Arrays.fill(nodeOf, -1);
+        int nodes = 0;
+        for (int cell = 0; cell < size; cell++) {
+            if (open[cell] && (pinned[cell] || degree[cell] != 2)) {
+                nodeOf[cell] = nodes++;
+            }
+        }
+        cellOf = new int[nodes];
+        for (int cell = 0; cell < size; cell++) {
+            if (nodeOf[cell] >= 0) { cellOf[nodeOf[cell]] = cell; }
+        }
+
+        // Walk every corridor leaving every junction, collapsing it into an arc;
+        // only its first action is kept, since the corridor can be walked again
+        // to expand it
+        int arcs = 0;
+        arcStart = new int[nodes + 1];
+        int[] targets = new int[4 * nodes], costs = new int[4 * nodes];
+        byte[] actions = new byte[4 * nodes];
+        for (int node = 0; node < nodes; node++) {
+            arcStart[node] = arcs;
+            for (int d = 0; d < ACTIONS.length; d++) {
+                if (!isOpen(open, cellOf[node], d)) { continue; }
+                long walked = walk(cellOf[node], d, cost, null);
+                int end = (int) walked, total = (int) (walked >>> 32);
+                // Corridors that loop back to their own junction are useless
+                if (nodeOf[end] != node) {
+                    targets[arcs] = nodeOf[end];
+                    costs[arcs] = total;
+                    actions[arcs++] = (byte) d;
+                }
+            }
+        }
+        arcStart[nodes] = arcs;
+        arcTarget = Arrays.copyOf(targets, arcs);
+        arcCost = Arrays.copyOf(costs, arcs);
+        arcAction = Arrays.copyOf(actions, arcs);
+    }
+
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * @return The number of junction nodes in this graph.
+     */
+    public int size () {
+        return cellOf.length;
+    }
+
+    /**
+     * Returns the node sitting at the given MazeState, or -1 if that state is
+     * not a junction (a wall, a corridor tile, or a pruned dead end). Initial,
+     * key, and goal states are always nodes.
+     *
+     * @param state The MazeState to look up.
+     * @return The node id at that state, or -1 if there is none.
+     */
+    public int nodeAt (MazeState state) {
+        if (state == null || state.col < 0 || state.col >= cols ||
+            state.row < 0 || state.row * cols + state.col >= nodeOf.length) {
+            return -1;
+        }
+        return nodeOf[state.row * cols + state.col];
+    }
+
+    /**
+     * @param node A node id in this graph.
+     * @return The column of the maze tile that the node sits on.
+     */
+    public int getCol (int node) {
+        return cellOf[node] % cols;
+    }
+
+    /**
+     * @param node A node id in this graph.
+     * @return The row of the maze tile that the node sits on.
+     */
+    public int getRow (int node) {
+        return cellOf[node] / cols;
+    }
+
+    /**
+     * Arcs leaving a node are numbered contiguously, from
+     * <code>firstArc(node)</code> (inclusive) to <code>firstArc(node + 1)</code>
+     * (exclusive).
+     *
+     * @param node A node id in this graph, or size() to find the end of the last node's arcs.
+     * @return The id of the first arc leaving the node.
+     */
+    public int firstArc (int node) {
+        return arcStart[node];
+    }
+
+    /**
+     * @param arc An arc id in this graph.
+     * @return The node that the arc leaves.
+     */
+    public int getSource (int arc) {
+        int low = 0, high = cellOf.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (arcStart[mid] <= arc) { low = mid; } else { high = mid - 1; }
+        }
+        return low;
+    }
+
+    /**
+     * @param arc An arc id in this graph.
+     * @return The node that the arc leads to.
+     */
+    public int getTarget (int arc) {
+        return arcTarget[arc];
+    }
+
+    /**
+     * @param arc An arc id in this graph.
+     * @return The summed cost of every tile entered while following the arc.
+     */
+    public int getCost (int arc) {
+        return arcCost[arc];
+    }
+
+    /**
+     * @param arc An arc id in this graph.
+     * @return The actions the arc stands for, one character per action, e.g. "RRDL".
+     */
+    public String getPath (int arc) {
+        StringBuilder path = new StringBuilder();
+        walk(cellOf[getSource(arc)], arcAction[arc], null, path);
+        return path.toString();
+    }
+
+    /**
+     * Expands a sequence of arcs back into the full action list that they
+     * stand for in the maze.
+     *
+     * @param arcs The arcs to expand, in the order in which they are taken.
+     * @return A List of Strings representing actions, of the format: ["R", "R", "L", ...]
+     */
+    public List<String> expand (List<Integer> arcs) {
+        List<String> actions = new ArrayList<>();
+        for (int arc : arcs) {
+            for (char action : getPath(arc).toCharArray()) {
+                actions.add(String.valueOf(action));
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * Walks the corridor that leaves the given junction tile in direction d,
+     * up to and including the next junction tile.
+     *
+     * @param start The tile of the junction that the corridor leaves.
+     * @param d The direction in which it leaves.
+     * @param cost If not null, the cost of entering each tile, to be summed along the way.
+     * @param path If not null, receives the action of every step taken.
+     * @return The tile that the corridor ends at in the low 32 bits, and the
+     * summed cost of the tiles entered in the high 32 bits.
+     */
+    private long walk (int start, int d, int[] cost, StringBuilder path) {
+        int prev = start, cur = neighbor(start, d);
+        long total = (cost == null) ? 0 : cost[cur];
+        if (path != null) { path.append(ACTIONS[d]); }
+        while (nodeOf[cur] < 0) {
+            for (int e = 0; e < ACTIONS.length; e++) {
+                if (isOpen(open, cur, e) && neighbor(cur, e) != prev) {
+                    prev = cur;
+                    cur = neighbor(cur, e);
+                    total += (cost == null) ? 0 : cost[cur];
+                    if (path != null) { path.append(ACTIONS[e]); }
+                    break;
+                }
+            }
+        }
+        return (total << 32) | cur;
+    }
+
+    /**
+     * @return The index of the tile adjacent to the given one in direction d.
+     */
+    private int neighbor (int cell, int d) {
+        return cell + ROW_MOD[d] * cols + COL_MOD[d];
+    }
+
+    /**
+     * @return Whether the tile adjacent to the given one in direction d is open,
+     * treating tiles beyond the left and right edges as walls.
+     */
+    private boolean isOpen (boolean[] open, int cell, int d) {
+        int col = cell % cols + COL_MOD[d], next = neighbor(cell, d);
+        return col >= 0 && col < cols && next >= 0 && next < open.length && open[next];
+    }
+
+    /**
+     * Marks the given state (if any) as one that may never be pruned.
+     */
+    private void pin (MazeState state, boolean[] pinned) {
+        if (state != null) {
+            pinned[state.row * cols + state.col] = true;
+        }
+    }
+
+}
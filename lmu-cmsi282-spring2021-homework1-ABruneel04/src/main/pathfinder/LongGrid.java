@@ -0,0 +1,53 @@
+package main.pathfinder;
+
+/**
+ * Read-only view of a maze grid whose coordinates may run past the int range of
+ * MazeState, for searches that index their state by long tile index
+ * (row * cols + col) in a {@link SearchArena}. Tiles are never materialized as
+ * a whole, so a grid may be generated or paged in on demand.
+ */
+public interface LongGrid {
+
+    /**
+     * @return The number of columns in the grid.
+     */
+    long getCols ();
+
+    /**
+     * @return The number of rows in the grid.
+     */
+    long getRows ();
+
+    /**
+     * @param col The column of the tile.
+     * @param row The row of the tile.
+     * @return The cost of entering the tile, or 0 if it is a wall or lies outside
+     * of the grid.
+     */
+    int getCost (long col, long row);
+
+    /**
+     * @return The number of tiles (open or not) in the grid.
+     */
+    default long size () {
+        return getCols() * getRows();
+    }
+
+    /**
+     * @param problem The MazeProblem to view.
+     * @return A LongGrid over the tiles of the given MazeProblem.
+     */
+    static LongGrid of (MazeProblem problem) {
+        return new LongGrid() {
+            public long getCols () { return problem.getCols(); }
+            public long getRows () { return problem.getRows(); }
+            public int getCost (long col, long row) {
+                if (col < 0 || col >= getCols() || row < 0 || row >= getRows() || problem.isWall((int) col, (int) row)) {
+                    return 0;
+                }
+                return problem.getCost((int) col, (int) row);
+            }
+        };
+    }
+
+}
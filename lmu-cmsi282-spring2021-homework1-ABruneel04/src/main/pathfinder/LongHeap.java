@@ -0,0 +1,85 @@
+package main.pathfinder;
+
+import java.util.Arrays;
+
+/**
+ * Binary min-heap of primitive longs, used by the preprocessing searches that
+ * run far too many Dijkstras for boxed PriorityQueue entries to be affordable.
+ * Entries are packed by the caller as (cost &lt;&lt; 32 | id), so that the heap
+ * order is cost order.
+ */
+class LongHeap {
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private long[] heap = new long[64];
+    private int size;
+
+    /**
+     * @param cost A non-negative cost.
+     * @param id A non-negative id.
+     * @return The heap entry for the given cost and id.
+     */
+    static long pack (int cost, int id) {
+        return ((long) cost << 32) | id;
+    }
+
+    /**
+     * @return The cost of the given heap entry.
+     */
+    static int cost (long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    /**
+     * @return The id of the given heap entry.
+     */
+    static int id (long entry) {
+        return (int) entry;
+    }
+
+    boolean isEmpty () {
+        return size == 0;
+    }
+
+    void clear () {
+        size = 0;
+    }
+
+    /**
+     * @return The smallest entry, without removing it.
+     */
+    long peek () {
+        return heap[0];
+    }
+
+    void push (long entry) {
+        if (size == heap.length) {
+            heap = Arrays.copyOf(heap, size * 2);
+        }
+        int i = size++;
+        while (i > 0 && heap[(i - 1) >>> 1] > entry) {
+            heap[i] = heap[(i - 1) >>> 1];
+            i = (i - 1) >>> 1;
+        }
+        heap[i] = entry;
+    }
+
+    /**
+     * @return The smallest entry, which is removed from the heap.
+     */
+    long pop () {
+        long top = heap[0], last = heap[--size];
+        int i = 0;
+        while (2 * i + 1 < size) {
+            int child = 2 * i + 1;
+            if (child + 1 < size && heap[child + 1] < heap[child]) { child++; }
+            if (heap[child] >= last) { break; }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = last;
+        return top;
+    }
+
+}
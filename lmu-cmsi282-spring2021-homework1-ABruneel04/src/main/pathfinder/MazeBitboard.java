@@ -0,0 +1,282 @@
+package main.pathfinder;
+
+import java.util.*;
+
+/**
+ * Packed bitboard view of a MazeProblem's grid, storing 64 tiles per long in
+ * each row. Supports a bit-parallel breadth-first wavefront in which a whole
+ * row's frontier is advanced with a handful of shift and mask operations, used
+ * for fast reachability checks and for distance fields from a single tile.
+ */
+public class MazeBitboard {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    private static final int MUD_COST = 3;
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final int rows, cols, words;
+    private final long[] open, mud;
+
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Constructs the bitboard of the given MazeProblem, in which bit (col % 64) of
+     * word (row * words + col / 64) is set for every open (and, separately, every
+     * mud) tile.
+     *
+     * @param problem The MazeProblem whose grid is to be packed.
+     */
+    public MazeBitboard (MazeProblem problem) {
+        this.rows = problem.getRows();
+        this.cols = problem.getCols();
+        this.words = (cols + 63) / 64;
+        this.open = new long[rows * words];
+        this.mud = new long[rows * words];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (!problem.isWall(col, row)) {
+                    open[row * words + col / 64] |= 1L << col;
+                    if (problem.getCost(col, row) == MUD_COST) {
+                        mud[row * words + col / 64] |= 1L << col;
+                    }
+                }
+            }
+        }
+    }
+
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Determines whether the given target can be reached from the given source
+     * by any sequence of moves, stopping the wavefront as soon as it is found.
+     *
+     * @param from The MazeState to flood from.
+     * @param to The MazeState to look for.
+     * @return true if a path exists between the two states, false otherwise
+     */
+    public boolean isReachable (MazeState from, MazeState to) {
+        if (!isOpen(from) || !isOpen(to)) { return false; }
+        long[] visited = new long[open.length], frontier = new long[open.length],
+               scratch = new long[open.length];
+        set(frontier, from);
+        set(visited, from);
+        int top = from.row, bottom = from.row;
+        while (top <= bottom) {
+            if (get(visited, to)) { return true; }
+            int[] range = advance(frontier, visited, scratch, top, bottom);
+            top = range[0];
+            bottom = range[1];
+        }
+        return get(visited, to);
+    }
+
+    /**
+     * Returns every tile that can be reached from the given source.
+     *
+     * @param from The MazeState to flood from.
+     * @return The packed set of reachable tiles, in the same layout as this bitboard.
+     */
+    public long[] getReachable (MazeState from) {
+        long[] visited = new long[open.length], frontier = new long[open.length],
+               scratch = new long[open.length];
+        if (!isOpen(from)) { return visited; }
+        set(frontier, from);
+        set(visited, from);
+        int top = from.row, bottom = from.row;
+        while (top <= bottom) {
+            int[] range = advance(frontier, visited, scratch, top, bottom);
+            top = range[0];
+            bottom = range[1];
+        }
+        return visited;
+    }
+
+    /**
+     * Returns the number of moves needed to reach each tile from the given
+     * source, ignoring mud (i.e., every move costs 1).
+     *
+     * @param from The MazeState to flood from.
+     * @return Distances indexed by (row * cols + col), with -1 for unreachable tiles.
+     */
+    public int[] getUnitDistances (MazeState from) {
+        int[] dist = new int[rows * cols];
+        Arrays.fill(dist, -1);
+        if (!isOpen(from)) { return dist; }
+        long[] visited = new long[open.length], frontier = new long[open.length],
+               scratch = new long[open.length];
+        set(frontier, from);
+        set(visited, from);
+        dist[from.row * cols + from.col] = 0;
+        int top = from.row, bottom = from.row;
+        for (int wave = 1; top <= bottom; wave++) {
+            int[] range = advance(frontier, visited, scratch, top, bottom);
+            top = range[0];
+            bottom = range[1];
+            record(frontier, dist, wave, top, bottom);
+        }
+        return dist;
+    }
+
+    /**
+     * Returns the cost of the cheapest path to each tile from the given source,
+     * with mud tiles costing 3 to enter as in {@link MazeProblem#getCost}. The
+     * unit wavefront is corrected for mud by parking any mud tile it touches for
+     * two extra waves before it joins the frontier, so each tile is still
+     * claimed exactly once, at its true cost.
+     *
+     * @param from The MazeState to flood from.
+     * @return Costs indexed by (row * cols + col), with -1 for unreachable tiles.
+     */
+    public int[] getDistances (MazeState from) {
+        int[] dist = new int[rows * cols];
+        Arrays.fill(dist, -1);
+        if (!isOpen(from)) { return dist; }
+        long[] claimed = new long[open.length], touched = new long[open.length];
+        long[][] parked = new long[MUD_COST + 1][open.length];
+        int[] top = new int[parked.length], bottom = new int[parked.length];
+        Arrays.fill(top, rows);
+        Arrays.fill(bottom, -1);
+        set(parked[0], from);
+        set(claimed, from);
+        top[0] = bottom[0] = from.row;
+        for (int wave = 0, pending = 1; pending > 0; wave++) {
+            int slot = wave % parked.length;
+            long[] frontier = parked[slot];
+            if (top[slot] > bottom[slot]) { continue; }
+            pending -= record(frontier, dist, wave, top[slot], bottom[slot]);
+
+            // Spread the frontier into every unclaimed neighbor, parking plain
+            // tiles for the next wave and mud tiles for MUD_COST waves later
+            int first = Math.max(top[slot] - 1, 0), last = Math.min(bottom[slot] + 1, rows - 1),
+                plain = (wave + 1) % parked.length, late = (wave + MUD_COST) % parked.length;
+            Arrays.fill(touched, first * words, (last + 1) * words, 0);
+            spread(frontier, touched, top[slot], bottom[slot]);
+            Arrays.fill(frontier, top[slot] * words, (bottom[slot] + 1) * words, 0);
+            top[slot] = rows;
+            bottom[slot] = -1;
+            for (int row = first; row <= last; row++) {
+                for (int w = row * words; w < (row + 1) * words; w++) {
+                    long fresh = touched[w] & open[w] & ~claimed[w];
+                    if (fresh == 0) { continue; }
+                    claimed[w] |= fresh;
+                    park(parked, top, bottom, plain, row, w, fresh & ~mud[w]);
+                    park(parked, top, bottom, late, row, w, fresh & mud[w]);
+                    pending += Long.bitCount(fresh);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * @param state A MazeState in the maze.
+     * @return Whether the given state lies in the maze and is not a wall.
+     */
+    public boolean isOpen (MazeState state) {
+        return contains(open, state);
+    }
+
+    /**
+     * Tests membership of a tile in a packed set of tiles built by this
+     * bitboard, such as the one returned by {@link #getReachable}.
+     *
+     * @param tiles The packed set of tiles.
+     * @param state The MazeState to look up.
+     * @return true if the state is in the set, false otherwise
+     */
+    public boolean contains (long[] tiles, MazeState state) {
+        return state != null && state.row >= 0 && state.row < rows &&
+               state.col >= 0 && state.col < cols && get(tiles, state);
+    }
+
+    /**
+     * Advances the wavefront by one move: the frontier is replaced by the
+     * unvisited open neighbors of its tiles, which are then marked visited.
+     * Only the rows around the frontier are touched.
+     *
+     * @return The range of rows [top, bottom] occupied by the new frontier,
+     * with top > bottom when it is empty.
+     */
+    private int[] advance (long[] frontier, long[] visited, long[] next, int top, int bottom) {
+        int from = Math.max(top - 1, 0), to = Math.min(bottom + 1, rows - 1);
+        Arrays.fill(next, from * words, (to + 1) * words, 0);
+        spread(frontier, next, top, bottom);
+        Arrays.fill(frontier, top * words, (bottom + 1) * words, 0);
+        int newTop = rows, newBottom = -1;
+        for (int row = from; row <= to; row++) {
+            for (int w = row * words; w < (row + 1) * words; w++) {
+                frontier[w] = next[w] & open[w] & ~visited[w];
+                visited[w] |= frontier[w];
+                if (frontier[w] != 0) {
+                    newTop = Math.min(newTop, row);
+                    newBottom = row;
+                }
+            }
+        }
+        return new int[] {newTop, newBottom};
+    }
+
+    /**
+     * ORs into out every tile adjacent to a frontier tile in rows [top, bottom],
+     * shifting whole words left and right (carrying across word boundaries) and
+     * OR-ing whole rows up and down.
+     */
+    private void spread (long[] frontier, long[] out, int top, int bottom) {
+        for (int row = top; row <= bottom; row++) {
+            int base = row * words;
+            for (int w = 0; w < words; w++) {
+                long bits = frontier[base + w];
+                if (bits == 0) { continue; }
+                out[base + w] |= (bits << 1) | (bits >>> 1);
+                if (w > 0)         { out[base + w - 1] |= bits << 63; }
+                if (w < words - 1) { out[base + w + 1] |= bits >>> 63; }
+                if (row > 0)        { out[base - words + w] |= bits; }
+                if (row < rows - 1) { out[base + words + w] |= bits; }
+            }
+        }
+    }
+
+    /**
+     * Adds the given bits of word w (in the given row) to a parked wave,
+     * widening that wave's row range to match.
+     */
+    private void park (long[][] parked, int[] top, int[] bottom, int slot, int row, int w, long bits) {
+        if (bits == 0) { return; }
+        parked[slot][w] |= bits;
+        top[slot] = Math.min(top[slot], row);
+        bottom[slot] = Math.max(bottom[slot], row);
+    }
+
+    /**
+     * Stores the given wave number as the distance of every frontier tile.
+     *
+     * @return The number of tiles recorded.
+     */
+    private int record (long[] frontier, int[] dist, int wave, int top, int bottom) {
+        int count = 0;
+        for (int row = top; row <= bottom; row++) {
+            for (int w = 0; w < words; w++) {
+                for (long bits = frontier[row * words + w]; bits != 0; bits &= bits - 1) {
+                    dist[row * cols + w * 64 + Long.numberOfTrailingZeros(bits)] = wave;
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private boolean get (long[] board, MazeState state) {
+        return (board[state.row * words + state.col / 64] & (1L << state.col)) != 0;
+    }
+
+    private void set (long[] board, MazeState state) {
+        board[state.row * words + state.col / 64] |= 1L << state.col;
+    }
+
+}
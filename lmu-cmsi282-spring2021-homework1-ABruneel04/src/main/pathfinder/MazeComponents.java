@@ -0,0 +1,129 @@
+package main.pathfinder;
+
+import java.util.*;
+
+/**
+ * Labels every open tile of a MazeProblem with the id of the walled-off region
+ * (connected component) that it belongs to, so that whether two tiles can reach
+ * one another at all is answered by comparing two labels.
+ */
+public class MazeComponents {
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final int rows, cols, count;
+    private final int[] labels;
+
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Labels the given MazeProblem with a two-pass scanline: the first pass gives
+     * each open tile a provisional label, joining it with its open neighbors above
+     * and to the left in a union-find forest; the second pass replaces every
+     * provisional label with the compact id of its root.
+     *
+     * @param problem The MazeProblem whose open tiles are to be labeled.
+     */
+    public MazeComponents (MazeProblem problem) {
+        this.rows = problem.getRows();
+        this.cols = problem.getCols();
+        this.labels = new int[rows * cols];
+        int[] parent = new int[rows * cols];
+        int provisional = 0;
+
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                int cell = row * cols + col;
+                if (problem.isWall(col, row)) {
+                    labels[cell] = -1;
+                    continue;
+                }
+                boolean up = !problem.isWall(col, row - 1), left = !problem.isWall(col - 1, row);
+                if (up && left) {
+                    labels[cell] = union(parent, labels[cell - cols], labels[cell - 1]);
+                } else if (up) {
+                    labels[cell] = labels[cell - cols];
+                } else if (left) {
+                    labels[cell] = labels[cell - 1];
+                } else {
+                    parent[provisional] = provisional;
+                    labels[cell] = provisional++;
+                }
+            }
+        }
+
+        int[] compact = new int[provisional];
+        Arrays.fill(compact, -1);
+        int found = 0;
+        for (int cell = 0; cell < labels.length; cell++) {
+            if (labels[cell] >= 0) {
+                int root = find(parent, labels[cell]);
+                if (compact[root] < 0) { compact[root] = found++; }
+                labels[cell] = compact[root];
+            }
+        }
+        this.count = found;
+    }
+
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * @return The number of walled-off regions in the maze.
+     */
+    public int count () {
+        return count;
+    }
+
+    /**
+     * @param state A MazeState in the maze.
+     * @return The id of the region containing the given state, or -1 if it is a
+     * wall or lies outside of the maze.
+     */
+    public int getLabel (MazeState state) {
+        if (state == null || state.row < 0 || state.row >= rows || state.col < 0 || state.col >= cols) {
+            return -1;
+        }
+        return labels[state.row * cols + state.col];
+    }
+
+    /**
+     * Determines, in constant time, whether a path exists between two states.
+     *
+     * @param a One MazeState in the maze.
+     * @param b Another MazeState in the maze.
+     * @return true if both states are open and lie in the same region, false otherwise
+     */
+    public boolean isConnected (MazeState a, MazeState b) {
+        int label = getLabel(a);
+        return label >= 0 && label == getLabel(b);
+    }
+
+    /**
+     * Joins the trees of the two given provisional labels.
+     *
+     * @return The root of the joined tree.
+     */
+    private static int union (int[] parent, int a, int b) {
+        int rootA = find(parent, a), rootB = find(parent, b);
+        if (rootA != rootB) {
+            parent[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+        }
+        return Math.min(rootA, rootB);
+    }
+
+    /**
+     * @return The root of the given provisional label's tree, halving the path to it along the way.
+     */
+    private static int find (int[] parent, int label) {
+        while (parent[label] != label) {
+            parent[label] = parent[parent[label]];
+            label = parent[label];
+        }
+        return label;
+    }
+
+}
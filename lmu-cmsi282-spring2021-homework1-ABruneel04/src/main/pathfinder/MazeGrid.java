@@ -0,0 +1,115 @@
+package main.pathfinder;
+
+import java.util.*;
+
+/**
+ * Flat, primitive copy of a MazeProblem's tiles, in which every tile is an int
+ * index (row * cols + col) and its entry cost a byte, for the preprocessing and
+ * search structures that index arrays by tile rather than by MazeState.
+ */
+class MazeGrid {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    static final String[] ACTIONS = {"U", "D", "L", "R"};
+    static final int[] COL_MOD = { 0, 0, -1, 1},
+                       ROW_MOD = {-1, 1,  0, 0};
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    final int rows, cols;
+    private final byte[] cost;
+
+    /**
+     * Copies the tiles of the given MazeProblem; walls get an entry cost of 0.
+     *
+     * @param problem The MazeProblem to copy.
+     */
+    MazeGrid (MazeProblem problem) {
+        this.rows = problem.getRows();
+        this.cols = problem.getCols();
+        this.cost = new byte[rows * cols];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                if (!problem.isWall(col, row)) {
+                    cost[row * cols + col] = (byte) problem.getCost(col, row);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The number of tiles (open or not) in the grid.
+     */
+    int size () {
+        return cost.length;
+    }
+
+    boolean isOpen (int cell) {
+        return cost[cell] != 0;
+    }
+
+    /**
+     * @return The cost of entering the given (open) tile.
+     */
+    int cost (int cell) {
+        return cost[cell];
+    }
+
+    /**
+     * @param cell The tile to move from.
+     * @param d The index of the action to take, into ACTIONS.
+     * @return The open tile reached by taking the action, or -1 if it is a wall
+     * or lies outside of the maze.
+     */
+    int neighbor (int cell, int d) {
+        int col = cell % cols + COL_MOD[d], row = cell / cols + ROW_MOD[d];
+        if (col < 0 || col >= cols || row < 0 || row >= rows) { return -1; }
+        int next = row * cols + col;
+        return isOpen(next) ? next : -1;
+    }
+
+    /**
+     * @return The index into ACTIONS of the action that moves from one tile to
+     * the adjacent other.
+     */
+    int action (int from, int to) {
+        if (to == from - cols) { return 0; }
+        if (to == from + cols) { return 1; }
+        return (to == from - 1) ? 2 : 3;
+    }
+
+    /**
+     * @return The tile index of the given state, or -1 if it is not an open tile.
+     */
+    int cellOf (MazeState state) {
+        if (state == null || state.col < 0 || state.col >= cols || state.row < 0 || state.row >= rows) {
+            return -1;
+        }
+        int cell = state.row * cols + state.col;
+        return isOpen(cell) ? cell : -1;
+    }
+
+    /**
+     * @return The MazeState of the given tile index.
+     */
+    MazeState stateOf (int cell) {
+        return new MazeState(cell % cols, cell / cols);
+    }
+
+    /**
+     * Converts a sequence of adjacent tiles into the actions that walk it.
+     *
+     * @param cells The tiles, in the order walked, starting at the first tile.
+     * @param length The number of tiles of the array that are in use.
+     * @return A List of Strings representing actions, of the format: ["R", "R", "L", ...]
+     */
+    List<String> actionsOf (int[] cells, int length) {
+        List<String> actions = new ArrayList<>(Math.max(length - 1, 0));
+        for (int i = 1; i < length; i++) {
+            actions.add(ACTIONS[action(cells[i - 1], cells[i])]);
+        }
+        return actions;
+    }
+
+}
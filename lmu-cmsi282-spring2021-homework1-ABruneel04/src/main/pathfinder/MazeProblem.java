@@ -14,8 +14,9 @@ public class MazeProblem {
     private String[] maze;
     private int rows, cols;
     private final MazeState INITIAL_STATE, GOAL_STATE;
-    private final Set<MazeState> KEY_STATES;
+    private final Set<MazeState> KEY_STATES, GOAL_STATES;
     private static final Map<String, MazeState> TRANS_MAP = createTransitions();
+    private MazeComponents components;
     
     /**
      * @return Creates the transition map that maps String actions to 
@@ -48,7 +49,7 @@ public class MazeProblem {
      * <ul>
      *   <li>Walls along its edges</li>
      *   <li>Exactly 1 initial state</li>
-     *   <li>At most 1 goal (0 or 1)</li>
+     *   <li>Any number of goals (including 0)</li>
      *   <li>Any number of keys (including 0)</li>
      * </ul>
      * For example, a valid maze might look like:
@@ -68,7 +69,7 @@ public class MazeProblem {
         this.rows = maze.length;
         this.cols = (rows == 0) ? 0 : maze[0].length();
         MazeState foundInitial = null, foundGoal = null;
-        Set<MazeState> keys = new HashSet<>();
+        Set<MazeState> keys = new HashSet<>(), goals = new HashSet<>();
         
         // Find the initial and goal state in the given maze, and then
         // store in fields once found
@@ -78,7 +79,8 @@ public class MazeProblem {
                 case 'I':
                     foundInitial = new MazeState(col, row); break;
                 case 'G':
-                    foundGoal = new MazeState(col, row); break;
+                    foundGoal = new MazeState(col, row);
+                    goals.add(foundGoal); break;
                 case 'K':
                     keys.add(new MazeState(col, row)); break;
                 case '.':
@@ -92,6 +94,7 @@ public class MazeProblem {
         }
         INITIAL_STATE = foundInitial;
         GOAL_STATE = foundGoal;
+        GOAL_STATES = goals;
         KEY_STATES = keys;
     }
     
@@ -111,7 +114,8 @@ public class MazeProblem {
     
     /**
      * Returns the MazeState containing the goal (the destination of the
-     * pathfinder after acquiring a key)
+     * pathfinder after acquiring a key); in mazes with more than one goal,
+     * this is the last one found (see {@link #getGoals()}).
      * 
      * @return The MazeState containing the goal.
      */
@@ -119,6 +123,17 @@ public class MazeProblem {
         return this.GOAL_STATE;
     }
     
+    /**
+     * Returns the Set of MazeStates containing the goals in the maze
+     * (possibly the empty set), any one of which the pathfinder may exit at
+     * after acquiring a key.
+     * 
+     * @return Set of MazeStates containing Goals.
+     */
+    public Set<MazeState> getGoals () {
+        return this.GOAL_STATES;
+    }
+    
     /**
      * Returns the Set of MazeStates containing the keys in the maze
      * (possibly the empty set) that the pathfinder must collect at least
@@ -130,6 +145,63 @@ public class MazeProblem {
         return this.KEY_STATES;
     }
     
+    /**
+     * Returns the number of rows in the maze.
+     * 
+     * @return The number of rows (height) of the maze.
+     */
+    public int getRows () {
+        return this.rows;
+    }
+    
+    /**
+     * Returns the number of columns in the maze.
+     * 
+     * @return The number of columns (width) of the maze.
+     */
+    public int getCols () {
+        return this.cols;
+    }
+    
+    /**
+     * Determines whether or not the tile at the given coordinates is a wall,
+     * treating any coordinates outside of the maze as walls as well.
+     * 
+     * @param col Integer column number of the tile
+     * @param row Integer row number of the tile
+     * @return true if the tile cannot be entered, false otherwise
+     */
+    public boolean isWall (int col, int row) {
+        return row < 0 || row >= rows || col < 0 || col >= cols ||
+               maze[row].charAt(col) == 'X';
+    }
+    
+    /**
+     * Determines, in constant time, whether any path exists between the two given
+     * states. The maze's regions are labeled once, on the first call, and reused
+     * for every call after.
+     * 
+     * @param a One MazeState in the maze.
+     * @param b Another MazeState in the maze.
+     * @return true if both states are open and lie in the same walled-off region
+     */
+    public boolean isConnected (MazeState a, MazeState b) {
+        return getComponents().isConnected(a, b);
+    }
+    
+    /**
+     * Returns the labeling of this maze's walled-off regions, building it on
+     * the first call.
+     * 
+     * @return The MazeComponents of this maze.
+     */
+    public synchronized MazeComponents getComponents () {
+        if (components == null) {
+            components = new MazeComponents(this);
+        }
+        return components;
+    }
+    
     /**
      * Returns the cost associated with entering the given state.
      * [!] Note: normally costs are defined on transitions Cost(s, a),
@@ -141,7 +213,19 @@ public class MazeProblem {
      * @return The cost associated with moving into the given state.
      */
     public int getCost (MazeState state) {
-        switch(maze[state.row].charAt(state.col)) {
+        return getCost(state.col, state.row);
+    }
+    
+    /**
+     * Returns the cost associated with entering the tile at the given
+     * coordinates; see {@link #getCost(MazeState)}.
+     * 
+     * @param col Integer column number of the tile
+     * @param row Integer row number of the tile
+     * @return The cost associated with moving into the given tile.
+     */
+    public int getCost (int col, int row) {
+        switch(maze[row].charAt(col)) {
             case 'M': return 3;
             default: return 1;
         }
@@ -213,7 +297,7 @@ public class MazeProblem {
             }
             cost += getCost(movingState);
         }
-        result[0] = movingState.equals(this.GOAL_STATE) && hasKey ? 1 : 0;
+        result[0] = GOAL_STATES.contains(movingState) && hasKey ? 1 : 0;
         result[1] = cost;
         return result;
     }
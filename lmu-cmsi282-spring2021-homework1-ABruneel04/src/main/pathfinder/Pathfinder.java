@@ -3,13 +3,41 @@
 package main.pathfinder;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
 
 /**
  * Maze Pathfinding algorithm that implements A* graph search for the Muddy Maze
- * Pathfinding Problems with Locked Goals.
+ * Pathfinding Problems with Locked Goals. The search runs over the maze's
+ * {@link JunctionGraph}, so corridors cost a single expansion and useless dead
+ * ends are never visited.
  */
 public abstract class Pathfinder {
     
+    // Constants
+    // -------------------------------
+    public static final int DEFAULT_TABLE_ENTRIES = 1 << 16;
+    
+    /**
+     * Search engines that solve can run each leg of the search with. All of them
+     * return optimal paths; they differ in how much memory they hold onto.
+     */
+    public enum Engine {
+        /** A* with a priority-queue frontier; fastest, but its frontier grows with the maze */
+        A_STAR,
+        /** IDA* backed by a fixed-size transposition table; memory stays bounded by the
+         *  length of the path plus the table, at the cost of re-expanding nodes */
+        IDA_STAR,
+        /** Fringe Search; A*'s expansion order within each threshold, but over a linked
+         *  list instead of a heap, so there is no queue upkeep per node generated */
+        FRINGE,
+        /** A* tile by tile over a {@link LongGrid}, with its state held off the heap in a
+         *  per-thread {@link SearchArena} that is reused from one solve to the next */
+        OFF_HEAP
+    }
+    
+    private static final ThreadLocal<SearchArena> ARENAS = ThreadLocal.withInitial(SearchArena::new);
+    
     /**
      * Given a MazeProblem, which specifies the actions and transitions available in the
      * search, returns a solution to the problem as a sequence of actions that leads from
@@ -20,76 +48,614 @@ public abstract class Pathfinder {
      * the goal state, of the format: ["R", "R", "L", ...]
      */
     public static List<String> solve (MazeProblem problem) {
-        ArrayList<String> actionList = new ArrayList<String>();
-        //make the priority queue compare by cost using compareTo
+        return solve(problem, Engine.A_STAR);
+    }
+    
+    /**
+     * Solves the given MazeProblem (see {@link #solve(MazeProblem)}) with the given
+     * search engine and a transposition table of DEFAULT_TABLE_ENTRIES entries.
+     * 
+     * @param problem A MazeProblem that specifies the maze, actions, transitions.
+     * @param engine The search engine to run each leg of the search with.
+     * @return A List of Strings representing actions that lead from the initial to
+     * the goal state, or null if there is none
+     */
+    public static List<String> solve (MazeProblem problem, Engine engine) {
+        return solve(problem, engine, DEFAULT_TABLE_ENTRIES);
+    }
+    
+    /**
+     * Solves the given MazeProblem (see {@link #solve(MazeProblem)}) with the given
+     * search engine. Smaller tables make memory-bounded engines slower, never wrong.
+     * 
+     * @param problem A MazeProblem that specifies the maze, actions, transitions.
+     * @param engine The search engine to run each leg of the search with.
+     * @param tableEntries The number of entries in the transposition table of a
+     * memory-bounded engine; ignored by A_STAR.
+     * @return A List of Strings representing actions that lead from the initial to
+     * the goal state, or null if there is none
+     */
+    public static List<String> solve (MazeProblem problem, Engine engine, int tableEntries) {
+        //at least one key and one goal must share the initial state's region;
+        //keys and goals walled off from it are never searched for
+        MazeState initial = problem.getInitial();
+        List<MazeState> keys = reachableFrom(problem, initial, problem.getKeys()),
+                        goals = reachableFrom(problem, initial, problem.getGoals());
+        if(keys.isEmpty() || goals.isEmpty()) {
+            return null;
+        }
+        if(engine == Engine.OFF_HEAP) {
+            return arenaSolve(problem, keys, goals);
+        }
+        return graphSolve(new JunctionGraph(problem), null, problem, keys, goals, engine, tableEntries);
+    }
+    
+    /**
+     * Solves the given MazeProblem (see {@link #solve(MazeProblem)}) with A* over the
+     * junction graph of the given goal bounds, skipping every arc whose box does not
+     * hold the key or goal being headed for. The bounds must have been built from
+     * the same maze.
+     * 
+     * @param problem A MazeProblem that specifies the maze, actions, transitions.
+     * @param bounds The GoalBounds precomputed for the maze.
+     * @return A List of Strings representing actions that lead from the initial to
+     * the goal state, or null if there is none
+     */
+    public static List<String> solve (MazeProblem problem, GoalBounds bounds) {
+        MazeState initial = problem.getInitial();
+        List<MazeState> keys = reachableFrom(problem, initial, problem.getKeys()),
+                        goals = reachableFrom(problem, initial, problem.getGoals());
+        if(keys.isEmpty() || goals.isEmpty()) {
+            return null;
+        }
+        return graphSolve(bounds.getGraph(), bounds, problem, keys, goals, Engine.A_STAR, DEFAULT_TABLE_ENTRIES);
+    }
+    
+    /**
+     * Runs both legs of the search for every key over the given junction graph. The
+     * keys' legs are independent of one another, so they run concurrently, sharing
+     * the cost of the cheapest complete route found so far: an A* leg gives up as
+     * soon as its cheapest possible route costs more than that, and a second leg is
+     * never started if the first already rules it out. Ties go to the earlier key,
+     * as they did when the keys were searched one after another.
+     */
+    private static List<String> graphSolve (JunctionGraph graph, GoalBounds bounds, MazeProblem problem,
+                                            List<MazeState> keys, List<MazeState> goals, Engine engine, int tableEntries) {
+        //search runs over the junction graph rather than tile by tile, with the
+        //second leg from each key heading for whichever goal is cheapest
+        MazeState initial = problem.getInitial();
+        SearchTreeNode root = new SearchTreeNode(graph.nodeAt(initial), -1, null, 0, 0);
+        int[] goalNodes = nodesOf(graph, goals);
+        SearchTreeNode[] found = new SearchTreeNode[keys.size()];
+        AtomicInteger bestCost = new AtomicInteger(Integer.MAX_VALUE);
+        IntStream legs = IntStream.range(0, keys.size());
+        (keys.size() > 1 ? legs.parallel() : legs).forEach(i -> {
+            int key = graph.nodeAt(keys.get(i)), keyToGoal = manhattanDistance(graph, key, goalNodes);
+            SearchTreeNode objective = explore(engine, new int[] {key}, graph, bounds, root, tableEntries, bestCost, keyToGoal);
+            if(objective == null || objective.cost + keyToGoal > bestCost.get()) {
+                return;
+            }
+            found[i] = explore(engine, goalNodes, graph, bounds, objective, tableEntries, bestCost, 0);
+            if(found[i] != null) {
+                bestCost.accumulateAndGet(found[i].cost, Math::min);
+            }
+        });
+        SearchTreeNode bestGoal = null;
+        for(SearchTreeNode goal : found) {
+            if(goal != null && (bestGoal == null || goal.cost < bestGoal.cost)) {
+                bestGoal = goal;
+            }
+        }
+        return (bestGoal == null) ? null : actionsTo(bestGoal, graph);
+    }
+    
+    /**
+     * Solves the given MazeProblem (see {@link #solve(MazeProblem)}) with a single
+     * A* search instead of two legs per key. The search runs over two layers of
+     * the junction graph, one before a key has been collected and one after:
+     * entering any key moves the search into the second layer, where every goal
+     * is a target. Its heuristic is the smallest Manhattan distance to any goal
+     * in the second layer, and to any goal by way of any key in the first, so the
+     * cheapest route to any goal is found without one search per key or goal.
+     * 
+     * @param problem A MazeProblem that specifies the maze, actions, transitions.
+     * @return A List of Strings representing actions that lead from the initial to
+     * any goal state, or null if there is none
+     */
+    public static List<String> solveMultiTarget (MazeProblem problem) {
+        MazeState initial = problem.getInitial();
+        List<MazeState> keys = reachableFrom(problem, initial, problem.getKeys()),
+                        goals = reachableFrom(problem, initial, problem.getGoals());
+        if(keys.isEmpty() || goals.isEmpty()) {
+            return null;
+        }
+        JunctionGraph graph = new JunctionGraph(problem);
+        int[] keyNodes = nodesOf(graph, keys), goalNodes = nodesOf(graph, goals);
+        boolean[] isKey = new boolean[graph.size()], isGoal = new boolean[graph.size()];
+        for(int key : keyNodes) { isKey[key] = true; }
+        for(int goal : goalNodes) { isGoal[goal] = true; }
+        //cheapest possible goal leg from each key, used by the first layer's heuristic
+        int[] keyToGoal = new int[keyNodes.length];
+        for(int i = 0; i < keyNodes.length; i++) {
+            keyToGoal[i] = manhattanDistance(graph, keyNodes[i], goalNodes);
+        }
+        
+        //layered states are numbered node * 2 + (1 if a key has been collected)
         PriorityQueue<SearchTreeNode> frontier = new PriorityQueue<>();
-        SearchTreeNode root = new SearchTreeNode(problem.getInitial(), null, null, 0);
-        SearchTreeNode bestGoal = root;
-        HashSet<MazeState> graveyard = new HashSet<MazeState>();
-        int minCost = 9999;
-        //need to check to see if there are any keys in the maze, if not it's unsolvable
-    	if(problem.getKeys().isEmpty()) {
-    		return null;
-    	}        
-    	for(MazeState key : problem.getKeys()) {
-        	frontier.clear();
-        	graveyard.clear();
-    		frontier.add(root);
-    		SearchTreeNode objective = nodeExplorer(key, problem, graveyard, frontier);
-    		frontier.clear();
-    		graveyard.clear();
-    		if(!(objective == null)) {
-        		frontier.add(objective);
-    		}
-        	SearchTreeNode goal = nodeExplorer(problem.getGoal(), problem, graveyard, frontier);
-        	if (goal == null) {
-        		return null;
-        	}
-        	if(minCost > goal.cost) {
-        		minCost = goal.cost;
-        		bestGoal = goal;
-        	}
-    	}
-        //need to note past actions to find actionList
-		while(!(bestGoal.equals(root))) {
-			String action = bestGoal.action;
-			actionList.add(0, action);
-			SearchTreeNode parent = bestGoal.parent;
-			bestGoal = parent;
-		}
-	return actionList;
+        boolean[] graveyard = new boolean[2 * graph.size()];
+        int[] bestCost = new int[2 * graph.size()];
+        Arrays.fill(bestCost, Integer.MAX_VALUE);
+        int start = 2 * graph.nodeAt(initial) + (isKey[graph.nodeAt(initial)] ? 1 : 0);
+        bestCost[start] = 0;
+        frontier.add(new SearchTreeNode(start, -1, null, 0, 0));
+        while(!frontier.isEmpty()) {
+            SearchTreeNode check = frontier.poll();
+            int node = check.node / 2, layer = check.node % 2;
+            if(layer == 1 && isGoal[node]) {
+                return actionsTo(check, graph);
+            }
+            if(graveyard[check.node]) {
+                continue;
+            }
+            graveyard[check.node] = true;
+            for(int arc = graph.firstArc(node); arc < graph.firstArc(node + 1); arc++) {
+                int childNode = graph.getTarget(arc),
+                    childLayer = (layer == 1 || isKey[childNode]) ? 1 : 0,
+                    child = 2 * childNode + childLayer,
+                    newCost = check.cost + graph.getCost(arc);
+                if(graveyard[child] || newCost >= bestCost[child]) {
+                    continue;
+                }
+                int estimate = Integer.MAX_VALUE;
+                if(childLayer == 1) {
+                    estimate = manhattanDistance(graph, childNode, goalNodes);
+                } else {
+                    for(int i = 0; i < keyNodes.length; i++) {
+                        estimate = Math.min(estimate, manhattanDistance(graph, childNode, keyNodes[i]) + keyToGoal[i]);
+                    }
+                }
+                bestCost[child] = newCost;
+                frontier.add(new SearchTreeNode(child, arc, check, newCost, newCost + estimate));
+            }
+        }
+        return null;
     }
     
     /**
+     * Solves the given MazeProblem with one tile-by-tile search per leg, keeping the
+     * cheapest pair of legs over every key; see {@link Engine#OFF_HEAP}.
+     */
+    private static List<String> arenaSolve (MazeProblem problem, List<MazeState> keys, List<MazeState> goals) {
+        LongGrid grid = LongGrid.of(problem);
+        SearchArena arena = ARENAS.get();
+        long[] goalTiles = goals.stream().mapToLong(goal -> tileOf(grid, goal)).toArray();
+        List<String> best = null;
+        int bestCost = Integer.MAX_VALUE;
+        for(MazeState key : keys) {
+            List<String> actions = new ArrayList<String>();
+            int toKey = gridExplorer(grid, tileOf(grid, problem.getInitial()), new long[] {tileOf(grid, key)}, arena, actions);
+            if(toKey < 0) {
+                continue;
+            }
+            int toGoal = gridExplorer(grid, tileOf(grid, key), goalTiles, arena, actions);
+            if(toGoal >= 0 && toKey + toGoal < bestCost) {
+                bestCost = toKey + toGoal;
+                best = actions;
+            }
+        }
+        return best;
+    }
+    
+    /**
+     * Runs A* tile by tile over the given grid from the given start tile until any of
+     * the target tiles is expanded, holding every bit of its state in the given arena.
+     * Tiles are numbered row * cols + col, so grids may have more tiles than an int
+     * can count; the cost of the path found must still fit in one.
      * 
-     * @param s MazeState s that we are trying to reach
-     * @param p The given MazeProblem p
-     * @param graveyard Our graveyard where we are storing explored states
-     * @param frontier The priority queue frontier that allows us to expand optimally
-     * @return the node that we are trying to find, whether it is the key node or goal node
-     */
-    
-    public static SearchTreeNode nodeExplorer(MazeState s, MazeProblem p, HashSet<MazeState> graveyard, PriorityQueue<SearchTreeNode> frontier) {
-    	
-        while(!(frontier.size() == 0)) {
-        	SearchTreeNode check = frontier.poll();
-        	if(check.state.equals(s)) {
-        		return check;
-        	}
-        	graveyard.add(check.state);
-            Map<String, MazeState> children = p.getTransitions(check.state);
-    		for(Map.Entry<String, MazeState> child : children.entrySet()) {
-    			int newCost = p.getCost(child.getValue()) + manhattanDistance(child.getValue(), p.getGoal()) + check.cost;
-    			SearchTreeNode childNode = new SearchTreeNode(child.getValue(), child.getKey(), check, newCost);
-    			if(!(graveyard.contains(childNode.state))) {
-        			frontier.add(childNode);
-    			}
-    		}
-        	
+     * @param grid The grid to search
+     * @param start The tile to search from
+     * @param targets The tiles that we are trying to reach, any one of which will do
+     * @param arena The off-heap arena to hold the search's state, which is wiped first
+     * @param actions Receives the actions of the path found, if any, of the format:
+     * ["R", "R", "L", ...]
+     * @return the cost of the path found, or -1 if no target can be reached
+     */
+    public static int gridExplorer(LongGrid grid, long start, long[] targets, SearchArena arena, List<String> actions) {
+        long cols = grid.getCols();
+        long[] sorted = targets.clone();
+        Arrays.sort(sorted);
+        arena.begin();
+        arena.reach(start, 0, SearchArena.NO_PARENT);
+        arena.push(manhattanDistance(cols, start, sorted), start);
+        
+        while(!arena.isEmpty()) {
+            long tile = arena.pop();
+            if(arena.isClosed(tile)) {
+                continue;
+            }
+            arena.close(tile);
+            int cost = arena.getCost(tile);
+            if(Arrays.binarySearch(sorted, tile) >= 0) {
+                //need to walk the parent actions back to the start, then reverse them
+                int first = actions.size();
+                for(long at = tile; arena.getParent(at) != SearchArena.NO_PARENT; ) {
+                    int d = arena.getParent(at);
+                    actions.add(MazeGrid.ACTIONS[d]);
+                    at -= MazeGrid.ROW_MOD[d] * cols + MazeGrid.COL_MOD[d];
+                }
+                Collections.reverse(actions.subList(first, actions.size()));
+                return cost;
+            }
+            long col = tile % cols, row = tile / cols;
+            for(int d = 0; d < MazeGrid.ACTIONS.length; d++) {
+                int enter = grid.getCost(col + MazeGrid.COL_MOD[d], row + MazeGrid.ROW_MOD[d]);
+                long child = tile + MazeGrid.ROW_MOD[d] * cols + MazeGrid.COL_MOD[d];
+                if(enter == 0 || cost + enter >= arena.getCost(child)) {
+                    continue;
+                }
+                arena.reach(child, cost + enter, d);
+                arena.push(cost + enter + manhattanDistance(cols, child, sorted), child);
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * @return The tile index of the given state in the given grid.
+     */
+    private static long tileOf (LongGrid grid, MazeState state) {
+        return state.row * grid.getCols() + state.col;
+    }
+    
+    /**
+     * @param cols the number of columns of the grid that all tiles belong to
+     * @param tile the tile that the agent is currently at
+     * @param targets the tiles which the agent is attempting to reach, any one of which will do
+     * @return a future cost value of the distance to the nearest of the targets
+     */
+    
+    public static long manhattanDistance(long cols, long tile, long[] targets) {
+        long nearest = Long.MAX_VALUE;
+        for(long target : targets) {
+            nearest = Math.min(nearest, Math.abs(target / cols - tile / cols) + Math.abs(target % cols - tile % cols));
+        }
+        return nearest;
+    }
+    
+    /**
+     * @return The states of the given collection that can be reached from the
+     * given initial state, i.e., that lie in its region of the maze.
+     */
+    private static List<MazeState> reachableFrom(MazeProblem problem, MazeState initial, Collection<MazeState> states) {
+        List<MazeState> result = new ArrayList<MazeState>();
+        for(MazeState state : states) {
+            if(problem.isConnected(initial, state)) {
+                result.add(state);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * @return The junction graph nodes of the given states.
+     */
+    private static int[] nodesOf(JunctionGraph graph, List<MazeState> states) {
+        return states.stream().mapToInt(graph::nodeAt).toArray();
+    }
+    
+    /**
+     * Expands the path of arcs that led to the given search node back into the
+     * actions it stands for.
+     */
+    private static List<String> actionsTo(SearchTreeNode found, JunctionGraph graph) {
+        //need to note past arcs to find actionList
+        LinkedList<Integer> arcs = new LinkedList<Integer>();
+        while(found.parent != null) {
+            arcs.addFirst(found.arc);
+            found = found.parent;
+        }
+        return graph.expand(arcs);
+    }
+    
+    /**
+     * Runs a single leg of the search with the given engine. Only A* gives up early
+     * on legs that cannot beat the cutoff; the other engines run every leg through.
+     * 
+     * @param cutoff The cost of the cheapest complete route found so far
+     * @param remaining A lower bound on the cost of the rest of the route once a
+     * target is reached
+     * @return the node that we are trying to find, or null if it cannot be reached
+     * (or, for A*, cannot be reached cheaply enough to matter)
+     */
+    private static SearchTreeNode explore(Engine engine, int[] targets, JunctionGraph graph, GoalBounds bounds,
+                                          SearchTreeNode start, int tableEntries, AtomicInteger cutoff, int remaining) {
+        switch(engine) {
+            case IDA_STAR: return depthExplorer(targets, graph, start, tableEntries);
+            case FRINGE: return fringeExplorer(targets, graph, start);
+            default: return nodeExplorer(targets, graph, start, bounds, cutoff, remaining);
+        }
+    }
+    
+    /**
+     * Runs A* over the junction graph from the given start node until any of the
+     * target nodes is expanded.
+     * 
+     * @param targets The nodes that we are trying to reach, any one of which will do
+     * @param graph The junction graph of the MazeProblem being solved
+     * @param start The node to search from; its cost carries over into the path found
+     * @return the node that we are trying to find, whether it is the key node or goal node,
+     * or null if it cannot be reached
+     */
+    public static SearchTreeNode nodeExplorer(int[] targets, JunctionGraph graph, SearchTreeNode start) {
+        return nodeExplorer(targets, graph, start, null);
+    }
+    
+    /**
+     * Runs A* as in {@link #nodeExplorer(int[], JunctionGraph, SearchTreeNode)}, but
+     * never follows an arc whose goal bounds hold none of the targets.
+     * 
+     * @param bounds The GoalBounds over the given graph, or null to follow every arc
+     */
+    public static SearchTreeNode nodeExplorer(int[] targets, JunctionGraph graph, SearchTreeNode start, GoalBounds bounds) {
+        return nodeExplorer(targets, graph, start, bounds, new AtomicInteger(Integer.MAX_VALUE), 0);
+    }
+    
+    /**
+     * Runs A* as in {@link #nodeExplorer(int[], JunctionGraph, SearchTreeNode, GoalBounds)},
+     * but gives up once every path left on the frontier, plus the given remaining cost,
+     * would cost more than the cutoff. The cutoff may be lowered by other threads while
+     * the search runs.
+     * 
+     * @param cutoff The cost above which any path found is of no use
+     * @param remaining A lower bound on the cost still to pay once a target is reached
+     * @return the node that we are trying to find, or null if it cannot be reached
+     * within the cutoff
+     */
+    public static SearchTreeNode nodeExplorer(int[] targets, JunctionGraph graph, SearchTreeNode start, GoalBounds bounds,
+                                              AtomicInteger cutoff, int remaining) {
+        PriorityQueue<SearchTreeNode> frontier = new PriorityQueue<>();
+        boolean[] graveyard = new boolean[graph.size()], isTarget = new boolean[graph.size()];
+        for(int target : targets) {
+            isTarget[target] = true;
+        }
+        int[] bestCost = new int[graph.size()];
+        Arrays.fill(bestCost, Integer.MAX_VALUE);
+        bestCost[start.node] = start.cost;
+        frontier.add(start);
+        
+        while(!frontier.isEmpty()) {
+            SearchTreeNode check = frontier.poll();
+            //the frontier comes out cheapest first, so nothing left on it can beat the cutoff
+            if(check.priority + remaining > cutoff.get()) {
+                return null;
+            }
+            if(isTarget[check.node]) {
+                return check;
+            }
+            if(graveyard[check.node]) {
+                continue;
+            }
+            graveyard[check.node] = true;
+            for(int arc = graph.firstArc(check.node); arc < graph.firstArc(check.node + 1); arc++) {
+                int child = graph.getTarget(arc), newCost = check.cost + graph.getCost(arc);
+                if(bounds != null && !bounds.containsAny(arc, targets)) {
+                    continue;
+                }
+                if(!graveyard[child] && newCost < bestCost[child]) {
+                    bestCost[child] = newCost;
+                    frontier.add(new SearchTreeNode(child, arc, check, newCost,
+                        newCost + manhattanDistance(graph, child, targets)));
+                }
+            }
+        }
+        return null;
+    }
+    
+    /**
+     * Runs IDA* over the junction graph from the given start node until any of the
+     * target nodes is generated. Each iteration is a depth-first search, kept on an explicit
+     * stack, that cuts off any node whose past plus estimated future cost exceeds the
+     * threshold; the next threshold is the smallest cost that was cut off. A
+     * transposition table remembers the cheapest cost at which a node was reached in
+     * the current iteration so that repeated visits can be skipped; when two nodes
+     * hash to the same entry the newer one replaces the older, which only costs
+     * re-expansions.
+     * 
+     * @param targets The nodes that we are trying to reach, any one of which will do
+     * @param graph The junction graph of the MazeProblem being solved
+     * @param start The node to search from; its cost carries over into the path found
+     * @param tableEntries The number of entries in the transposition table
+     * @return the node that we are trying to find, or null if it cannot be reached
+     */
+    public static SearchTreeNode depthExplorer(int[] targets, JunctionGraph graph, SearchTreeNode start, int tableEntries) {
+        boolean[] isTarget = new boolean[graph.size()];
+        for(int target : targets) {
+            isTarget[target] = true;
+        }
+        if(isTarget[start.node]) {
+            return start;
+        }
+        int[] tableNode = new int[Math.max(tableEntries, 1)],
+              tableCost = new int[tableNode.length],
+              tableIteration = new int[tableNode.length];
+        int[] stackNode = new int[64], stackCost = new int[64], stackArc = new int[64], stackVia = new int[64];
+        int threshold = start.cost + manhattanDistance(graph, start.node, targets);
+        
+        for(int iteration = 1; threshold < Integer.MAX_VALUE; iteration++) {
+            int nextThreshold = Integer.MAX_VALUE, depth = 0;
+            stackNode[0] = start.node;
+            stackCost[0] = start.cost;
+            stackArc[0] = graph.firstArc(start.node);
+            int rootSlot = Math.floorMod(start.node * 0x9E3779B1, tableNode.length);
+            tableIteration[rootSlot] = iteration;
+            tableNode[rootSlot] = start.node;
+            tableCost[rootSlot] = start.cost;
+            while(depth >= 0) {
+                int node = stackNode[depth], arc = stackArc[depth];
+                if(arc == graph.firstArc(node + 1)) {
+                    depth--;
+                    continue;
+                }
+                stackArc[depth]++;
+                int child = graph.getTarget(arc), newCost = stackCost[depth] + graph.getCost(arc),
+                    priority = newCost + manhattanDistance(graph, child, targets);
+                if(priority > threshold) {
+                    nextThreshold = Math.min(nextThreshold, priority);
+                    continue;
+                }
+                int slot = Math.floorMod(child * 0x9E3779B1, tableNode.length);
+                if(tableIteration[slot] == iteration && tableNode[slot] == child && tableCost[slot] <= newCost) {
+                    continue;
+                }
+                tableIteration[slot] = iteration;
+                tableNode[slot] = child;
+                tableCost[slot] = newCost;
+                
+                if(++depth == stackNode.length) {
+                    stackNode = Arrays.copyOf(stackNode, depth * 2);
+                    stackCost = Arrays.copyOf(stackCost, depth * 2);
+                    stackArc = Arrays.copyOf(stackArc, depth * 2);
+                    stackVia = Arrays.copyOf(stackVia, depth * 2);
+                }
+                stackNode[depth] = child;
+                stackCost[depth] = newCost;
+                stackArc[depth] = graph.firstArc(child);
+                stackVia[depth] = arc;
+                if(isTarget[child]) {
+                    SearchTreeNode found = start;
+                    for(int i = 1; i <= depth; i++) {
+                        found = new SearchTreeNode(stackNode[i], stackVia[i], found, stackCost[i], stackCost[i]);
+                    }
+                    return found;
+                }
+            }
+            threshold = nextThreshold;
+        }
+        return null;
+    }
+    
+    /**
+     * Runs Fringe Search over the junction graph from the given start node until any
+     * of the target nodes is visited. Like IDA*, each pass only expands nodes whose
+     * past plus estimated future cost is within the threshold, and the next threshold
+     * is the smallest cost left over; unlike IDA*, the fringe of nodes left over is
+     * kept between passes in a doubly-linked list (children going right after their
+     * parent, so that they are visited in the same pass), and every node's cheapest
+     * known cost is cached, so no node is ever re-expanded at the same cost.
+     * 
+     * @param targets The nodes that we are trying to reach, any one of which will do
+     * @param graph The junction graph of the MazeProblem being solved
+     * @param start The node to search from; its cost carries over into the path found
+     * @return the node that we are trying to find, or null if it cannot be reached
+     */
+    public static SearchTreeNode fringeExplorer(int[] targets, JunctionGraph graph, SearchTreeNode start) {
+        int size = graph.size();
+        boolean[] isTarget = new boolean[size], onFringe = new boolean[size];
+        for(int target : targets) {
+            isTarget[target] = true;
+        }
+        //past costs (the g cache), future estimates, and arcs taken to reach each node
+        int[] pastCost = new int[size], estimate = new int[size], via = new int[size];
+        int[] next = new int[size], prev = new int[size];
+        Arrays.fill(pastCost, Integer.MAX_VALUE);
+        Arrays.fill(estimate, -1);
+        pastCost[start.node] = start.cost;
+        estimate[start.node] = manhattanDistance(graph, start.node, targets);
+        via[start.node] = -1;
+        next[start.node] = prev[start.node] = -1;
+        onFringe[start.node] = true;
+        int head = start.node;
+        int threshold = start.cost + estimate[start.node];
+        
+        while(head != -1) {
+            int nextThreshold = Integer.MAX_VALUE;
+            for(int node = head; node != -1; ) {
+                int priority = pastCost[node] + estimate[node];
+                if(priority > threshold) {
+                    nextThreshold = Math.min(nextThreshold, priority);
+                    node = next[node];
+                    continue;
+                }
+                if(isTarget[node]) {
+                    return pathTo(node, via, graph, start);
+                }
+                for(int arc = graph.firstArc(node); arc < graph.firstArc(node + 1); arc++) {
+                    int child = graph.getTarget(arc), newCost = pastCost[node] + graph.getCost(arc);
+                    if(newCost >= pastCost[child]) {
+                        continue;
+                    }
+                    if(estimate[child] < 0) {
+                        estimate[child] = manhattanDistance(graph, child, targets);
+                    }
+                    pastCost[child] = newCost;
+                    via[child] = arc;
+                    //unlink the child from wherever it sat, then relink it right after its parent
+                    if(onFringe[child]) {
+                        if(prev[child] != -1) { next[prev[child]] = next[child]; } else { head = next[child]; }
+                        if(next[child] != -1) { prev[next[child]] = prev[child]; }
+                    }
+                    onFringe[child] = true;
+                    prev[child] = node;
+                    next[child] = next[node];
+                    if(next[node] != -1) { prev[next[node]] = child; }
+                    next[node] = child;
+                }
+                //the node is done with until a cheaper way to it turns up
+                int following = next[node];
+                if(prev[node] != -1) { next[prev[node]] = following; } else { head = following; }
+                if(following != -1) { prev[following] = prev[node]; }
+                onFringe[node] = false;
+                node = following;
+            }
+            threshold = nextThreshold;
         }
         return null;
     }
     
+    /**
+     * Rebuilds the chain of search nodes that leads from the start node to the given
+     * node by following the arcs recorded for each node back to the start.
+     */
+    private static SearchTreeNode pathTo(int node, int[] via, JunctionGraph graph, SearchTreeNode start) {
+        LinkedList<Integer> arcs = new LinkedList<Integer>();
+        for(int at = node; at != start.node; at = graph.getSource(via[at])) {
+            arcs.addFirst(via[at]);
+        }
+        SearchTreeNode found = start;
+        for(int arc : arcs) {
+            int cost = found.cost + graph.getCost(arc);
+            found = new SearchTreeNode(graph.getTarget(arc), arc, found, cost, cost);
+        }
+        return found;
+    }
+    
+    /**
+     * @param graph the junction graph that both nodes belong to
+     * @param n_one the node that the agent is currently at
+     * @param n_two the key node or goal node which the agent is attempting to reach
+     * @return a future cost value of the distance between the tiles of the two nodes
+     */
+    
+    public static int manhattanDistance(JunctionGraph graph, int n_one, int n_two) {
+        return Math.abs(graph.getRow(n_two) - graph.getRow(n_one)) +
+               Math.abs(graph.getCol(n_two) - graph.getCol(n_one));
+    }
+    
+    /**
+     * @param graph the junction graph that all nodes belong to
+     * @param node the node that the agent is currently at
+     * @param targets the nodes which the agent is attempting to reach, any one of which will do
+     * @return a future cost value of the distance to the nearest of the targets
+     */
+    
+    public static int manhattanDistance(JunctionGraph graph, int node, int[] targets) {
+        int nearest = Integer.MAX_VALUE;
+        for(int target : targets) {
+            nearest = Math.min(nearest, manhattanDistance(graph, node, target));
+        }
+        return nearest;
+    }
+    
     /**
      * 
      * @param s_one the current state that applies to the agent
@@ -113,43 +679,41 @@ public abstract class Pathfinder {
      */
     private static class SearchTreeNode implements Comparable<SearchTreeNode> {
         
-        MazeState state;
-        String action;
+        int node;
+        int arc;
         SearchTreeNode parent;
         int cost;
+        int priority;
         
         /**
          * Constructs a new SearchTreeNode to be used in the Search Tree.
          * 
-         * @param state The MazeState (row, col) that this node represents.
-         * @param action The action that *led to* this state / node.
+         * @param node The junction graph node that this search node represents.
+         * @param arc The arc that *led to* this node.
          * @param parent Reference to parent SearchTreeNode in the Search Tree.
-         * @param cost The cost to explore the SearchTreeNode
+         * @param cost The past cost of reaching this node from the initial state
+         * @param priority The past cost plus the estimated future cost to the target
          */
-        SearchTreeNode (MazeState state, String action, SearchTreeNode parent, int cost) {
-            this.state = state;
-            this.action = action;
+        SearchTreeNode (int node, int arc, SearchTreeNode parent, int cost, int priority) {
+            this.node = node;
+            this.arc = arc;
             this.parent = parent;
             this.cost = cost;
+            this.priority = priority;
         }
         
         /**
          * @param SearchTreeNode n that is being compared to a node already in the priority queue
-         * @return an integer value that tells the priority queue how to rank nodes in the queue
+         * @return an integer value that tells the priority queue how to rank nodes in the queue,
+         * preferring deeper nodes (higher past cost) when priorities are equal
          */
         public int compareTo(SearchTreeNode n) {
-        	if(n.cost > this.cost) {
-        		return -1;
-        	}
-        	else if(n.cost < this.cost) {
-        		return 1;
-        	}
-        	else {
-        		return 0;
+        	if(this.priority != n.priority) {
+        		return Integer.compare(this.priority, n.priority);
         	}
+        	return Integer.compare(n.cost, this.cost);
         }
         
     }
     
 }
-
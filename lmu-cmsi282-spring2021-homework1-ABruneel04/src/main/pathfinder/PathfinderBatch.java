@@ -0,0 +1,351 @@
+package main.pathfinder;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Command-line entry point that streams newline-delimited JSON maze records
+ * through {@link Pathfinder#solve(MazeProblem)}. Every input line holds one
+ * record of the format:
+ * <pre>
+ * {"id": "m1", "maze": ["XXXXXX", "XI.KGX", "XXXXXX"]}
+ * </pre>
+ * and produces exactly one output line, in input order, of the format:
+ * <pre>
+ * {"id": "m1", "cost": 3, "solution": "RRR"}
+ * </pre>
+ * with a null solution (and cost of -1) when the maze has none, or an "error"
+ * field in their place when the record could not be parsed or solved.
+ * <p>
+ * Reading, solving, and writing run as a pipeline: a reader thread hands raw
+ * lines to a pool of workers that parse and solve them, while the writer
+ * drains their results in order from a bounded queue. The reader blocks once
+ * the queue is full, so memory stays constant however long the input is.
+ * <p>
+ * Usage: <code>java main.pathfinder.PathfinderBatch [FILE] [THREADS]</code>,
+ * reading stdin if no FILE (or "-") is given.
+ */
+public class PathfinderBatch {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    private static final int RECORDS_PER_THREAD = 4;
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final int threads;
+
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * @param threads The number of worker threads that parse and solve records.
+     */
+    public PathfinderBatch (int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least 1 worker thread is required");
+        }
+        this.threads = threads;
+    }
+
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    public static void main (String[] args) throws IOException, InterruptedException {
+        int threads = (args.length > 1) ? Integer.parseInt(args[1])
+                                        : Runtime.getRuntime().availableProcessors();
+        InputStream in = (args.length > 0 && !args[0].equals("-")) ? new FileInputStream(args[0]) : System.in;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+            new PathfinderBatch(threads).run(reader, writer);
+        }
+    }
+
+    /**
+     * Solves every record read from the given reader, writing one result line
+     * per record to the given writer in input order. Blank lines are skipped.
+     * The writer is flushed, but not closed, once the input is exhausted.
+     *
+     * @param reader The source of newline-delimited maze records.
+     * @param writer The destination of newline-delimited results.
+     */
+    public void run (BufferedReader reader, Writer writer) throws IOException, InterruptedException {
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        BlockingQueue<Future<String>> pending = new ArrayBlockingQueue<>(RECORDS_PER_THREAD * threads);
+        // A completed future with no value marks the end of the input
+        Future<String> endOfInput = CompletableFuture.completedFuture(null);
+        IOException[] readFailure = new IOException[1];
+
+        Thread readerThread = new Thread(() -> {
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) { continue; }
+                    String record = line;
+                    pending.put(workers.submit(() -> solveRecord(record)));
+                }
+            } catch (IOException e) {
+                readFailure[0] = e;
+            } catch (RejectedExecutionException e) {
+                // Writing failed and the workers were shut down; stop reading
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                try {
+                    pending.put(endOfInput);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, "pathfinder-batch-reader");
+        readerThread.start();
+
+        try {
+            for (Future<String> result = pending.take(); result != endOfInput; result = pending.take()) {
+                writer.write(resultOf(result));
+                writer.write('\n');
+            }
+            writer.flush();
+        } finally {
+            readerThread.interrupt();
+            workers.shutdownNow();
+        }
+        readerThread.join();
+        if (readFailure[0] != null) {
+            throw readFailure[0];
+        }
+    }
+
+    /**
+     * Parses and solves a single record.
+     *
+     * @param record One line of input.
+     * @return The line of output for that record, without its line break.
+     */
+    static String solveRecord (String record) {
+        RecordParser parser = new RecordParser(record);
+        try {
+            parser.parse();
+            if (parser.maze == null) {
+                return errorOf(parser.id, "record has no maze");
+            }
+            MazeProblem problem = new MazeProblem(parser.maze);
+            return solvedOf(parser.id, problem, Pathfinder.solve(problem));
+        } catch (RuntimeException e) {
+            // Records that break off partway still report the id, if it came first
+            return errorOf(parser.id, String.valueOf(e.getMessage()));
+        }
+    }
+
+    /**
+     * @param id The id of the solved record, as raw JSON.
+     * @param problem The MazeProblem of the record.
+     * @param solution The solution found for the problem, or null if it has none.
+     * @return The line of output reporting the solution and its cost.
+     */
+    static String solvedOf (String id, MazeProblem problem, List<String> solution) {
+        StringBuilder result = new StringBuilder("{\"id\": ").append(id);
+        if (solution == null) {
+            return result.append(", \"cost\": -1, \"solution\": null}").toString();
+        }
+        result.append(", \"cost\": ").append(problem.testSolution(solution)[1]).append(", \"solution\": \"");
+        for (String action : solution) {
+            result.append(action);
+        }
+        return result.append("\"}").toString();
+    }
+
+    /**
+     * @return The line of output held by the given future, waiting for it if
+     * its record is still being solved.
+     */
+    private static String resultOf (Future<String> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException e) {
+            return errorOf(null, String.valueOf(e.getCause()));
+        }
+    }
+
+    /**
+     * @param id The id of the failed record, as raw JSON, or null if it is unknown.
+     * @param message The reason the record failed.
+     * @return The line of output reporting the failure.
+     */
+    static String errorOf (String id, String message) {
+        return "{\"id\": " + ((id == null) ? "null" : id) + ", \"error\": " + quote(message) + "}";
+    }
+
+    /**
+     * @return The given string as a JSON string literal.
+     */
+    static String quote (String s) {
+        StringBuilder quoted = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':  quoted.append("\\\""); break;
+                case '\\': quoted.append("\\\\"); break;
+                case '\n': quoted.append("\\n"); break;
+                case '\r': quoted.append("\\r"); break;
+                case '\t': quoted.append("\\t"); break;
+                default:
+                    if (c < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+
+    // Record Parser
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Hand-rolled parser for the one record shape this tool reads, so that the
+     * module keeps no dependencies: a JSON object whose "id" is any scalar (kept
+     * as its raw JSON text, to be echoed back verbatim) and whose "maze" is an
+     * array of strings. Any other fields are skipped.
+     */
+    static class RecordParser {
+
+        private final String text;
+        private int pos;
+        String id = "null";
+        String[] maze;
+
+        RecordParser (String text) {
+            this.text = text;
+        }
+
+        void parse () {
+            expect('{');
+            if (!consume('}')) {
+                do {
+                    String field = readString();
+                    expect(':');
+                    switch (field) {
+                        case "id":   id = readScalar(); break;
+                        case "maze": maze = readStrings(); break;
+                        default:     skipValue();
+                    }
+                } while (consume(','));
+                expect('}');
+            }
+            if (skipWhitespace() < text.length()) { throw error("unexpected text after record"); }
+        }
+
+        private String[] readStrings () {
+            List<String> strings = new ArrayList<>();
+            expect('[');
+            if (peek() == ']') { pos++; return new String[0]; }
+            do {
+                strings.add(readString());
+            } while (consume(','));
+            expect(']');
+            return strings.toArray(new String[0]);
+        }
+
+        /**
+         * @return The raw JSON text of the scalar at the current position.
+         */
+        private String readScalar () {
+            if (peek() == '"') {
+                int start = pos;
+                readString();
+                return text.substring(start, pos);
+            }
+            int start = pos;
+            while (pos < text.length() && ",}]".indexOf(text.charAt(pos)) < 0
+                   && !Character.isWhitespace(text.charAt(pos))) {
+                pos++;
+            }
+            if (pos == start) { throw error("expected a value"); }
+            return text.substring(start, pos);
+        }
+
+        private String readString () {
+            expect('"');
+            StringBuilder s = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') { return s.toString(); }
+                if (c != '\\') { s.append(c); continue; }
+                char escaped = next();
+                switch (escaped) {
+                    case 'n': s.append('\n'); break;
+                    case 't': s.append('\t'); break;
+                    case 'r': s.append('\r'); break;
+                    case 'b': s.append('\b'); break;
+                    case 'f': s.append('\f'); break;
+                    case 'u':
+                        if (pos + 4 > text.length()) { throw error("truncated escape"); }
+                        s.append((char) Integer.parseInt(text.substring(pos, pos + 4), 16));
+                        pos += 4;
+                        break;
+                    default: s.append(escaped);
+                }
+            }
+        }
+
+        /**
+         * Skips over a value of any type, nesting included.
+         */
+        private void skipValue () {
+            char c = peek();
+            if (c == '"') {
+                readString();
+            } else if (c == '{' || c == '[') {
+                int depth = 0;
+                do {
+                    char d = peek();
+                    if (d == '"') { readString(); continue; }
+                    pos++;
+                    if (d == '{' || d == '[') { depth++; }
+                    if (d == '}' || d == ']') { depth--; }
+                } while (depth > 0);
+            } else {
+                readScalar();
+            }
+        }
+
+        private char peek () {
+            skipWhitespace();
+            if (pos >= text.length()) { throw error("unexpected end of record"); }
+            return text.charAt(pos);
+        }
+
+        private char next () {
+            if (pos >= text.length()) { throw error("unexpected end of record"); }
+            return text.charAt(pos++);
+        }
+
+        private boolean consume (char c) {
+            if (peek() != c) { return false; }
+            pos++;
+            return true;
+        }
+
+        private void expect (char c) {
+            if (!consume(c)) { throw error("expected '" + c + "'"); }
+        }
+
+        private int skipWhitespace () {
+            while (pos < text.length() && Character.isWhitespace(text.charAt(pos))) { pos++; }
+            return pos;
+        }
+
+        private IllegalArgumentException error (String message) {
+            return new IllegalArgumentException("Malformed record at column " + pos + ": " + message);
+        }
+
+    }
+
+}
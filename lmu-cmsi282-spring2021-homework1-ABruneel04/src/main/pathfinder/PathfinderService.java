@@ -0,0 +1,484 @@
+package main.pathfinder;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local pathfinding service for bursts of queries that share a maze and differ
+ * only in their endpoints. Requests and responses are the newline-delimited
+ * JSON records of {@link PathfinderBatch}, sent over a socket on the loopback
+ * interface or submitted in-process.
+ * <p>
+ * Requests are grouped by their maze's terrain, i.e., the maze with its
+ * initial state, keys, and goals replaced by open tiles. The first request for
+ * a terrain opens a group that collects every request for the same terrain
+ * arriving within a short window after it. The group is then answered in one
+ * go: its packed grid, its regions, and a distance field from every initial
+ * state and key in the group are built once and shared by all of its
+ * requests. A group holding a single request is passed to
+ * {@link Pathfinder#solve(MazeProblem)} instead, since nothing is shared.
+ * <p>
+ * Every connection may pipeline its requests; responses come back in the
+ * order the requests were sent on that connection.
+ * <p>
+ * Usage: <code>java main.pathfinder.PathfinderService [PORT] [WINDOW_MS] [THREADS]</code>
+ */
+public class PathfinderService implements Closeable {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    private static final int DEFAULT_PORT = 2820, DEFAULT_WINDOW_MILLIS = 5,
+                             MAX_GROUP = 256, REQUESTS_PER_CONNECTION = 64;
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final long windowMillis;
+    private final Map<String, Group> open = new HashMap<>();
+    private final ScheduledExecutorService timer;
+    private final ExecutorService workers;
+    private final AtomicLong requestCount = new AtomicLong(), groupCount = new AtomicLong();
+    private ServerSocket server;
+    // Every connection being served, or null once the service is closed
+    private Set<Socket> connections = new HashSet<>();
+    // Set once the service is closed, and read or set only while holding the
+    // lock on the map of open groups
+    private boolean closed;
+
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * @param windowMillis How long a group stays open to requests after its
+     * first one arrives, in milliseconds.
+     * @param threads The number of worker threads that answer groups.
+     */
+    public PathfinderService (long windowMillis, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("At least 1 worker thread is required");
+        }
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("The grouping window cannot be negative");
+        }
+        this.windowMillis = windowMillis;
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemon("pathfinder-service-timer"));
+        this.workers = Executors.newFixedThreadPool(threads, daemon("pathfinder-service-worker"));
+    }
+
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    public static void main (String[] args) throws IOException, InterruptedException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        long windowMillis = (args.length > 1) ? Long.parseLong(args[1]) : DEFAULT_WINDOW_MILLIS;
+        int threads = (args.length > 2) ? Integer.parseInt(args[2])
+                                        : Runtime.getRuntime().availableProcessors();
+        PathfinderService service = new PathfinderService(windowMillis, threads);
+        System.err.println("Listening on port " + service.listen(port));
+        Thread.currentThread().join();
+    }
+
+    /**
+     * Starts accepting connections on the loopback interface.
+     *
+     * @param port The port to listen on, or 0 for any free port.
+     * @return The port that is being listened on.
+     */
+    public synchronized int listen (int port) throws IOException {
+        if (server != null) {
+            throw new IllegalStateException("The service is already listening");
+        }
+        server = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        ServerSocket listening = server;
+        Thread acceptor = daemon("pathfinder-service-acceptor").newThread(() -> {
+            try {
+                while (true) {
+                    Socket socket = listening.accept();
+                    if (!register(socket)) {
+                        socket.close();
+                        break;
+                    }
+                    daemon("pathfinder-service-connection").newThread(() -> serve(socket)).start();
+                }
+            } catch (IOException e) {
+                // The server socket was closed
+            }
+        });
+        acceptor.start();
+        return listening.getLocalPort();
+    }
+
+    /**
+     * Submits a single request record, which joins the open group for its
+     * maze's terrain, opening one if there is none.
+     *
+     * @param record One request record.
+     * @return The line of output for that record, without its line break, once
+     * its group has been answered, or an error record if the service is closed.
+     */
+    public CompletableFuture<String> submit (String record) {
+        requestCount.incrementAndGet();
+        PathfinderBatch.RecordParser parser = new PathfinderBatch.RecordParser(record);
+        Request request;
+        try {
+            parser.parse();
+            if (parser.maze == null) {
+                return CompletableFuture.completedFuture(PathfinderBatch.errorOf(parser.id, "record has no maze"));
+            }
+            request = new Request(parser.id, new MazeProblem(parser.maze));
+        } catch (RuntimeException e) {
+            return CompletableFuture.completedFuture(PathfinderBatch.errorOf(parser.id, String.valueOf(e.getMessage())));
+        }
+
+        String[] terrain = terrainOf(parser.maze);
+        String key = String.join("\n", terrain);
+        Group group;
+        synchronized (open) {
+            if (closed) {
+                return CompletableFuture.completedFuture(PathfinderBatch.errorOf(parser.id, "the service is closed"));
+            }
+            group = open.get(key);
+            if (group == null) {
+                Group opened = new Group(key, terrain);
+                // Scheduled before it is published, so that no request can join
+                // a group that is never dispatched
+                timer.schedule(() -> dispatch(opened), windowMillis, TimeUnit.MILLISECONDS);
+                open.put(key, opened);
+                group = opened;
+            }
+            group.requests.add(request);
+            // Dispatched before the lock is released, so that the workers
+            // cannot be shut down in between
+            if (group.requests.size() >= MAX_GROUP) {
+                dispatch(group);
+            }
+        }
+        return request.result;
+    }
+
+    /**
+     * @return The number of request records submitted so far.
+     */
+    public long getRequestCount () {
+        return requestCount.get();
+    }
+
+    /**
+     * @return The number of groups answered so far.
+     */
+    public long getGroupCount () {
+        return groupCount.get();
+    }
+
+    /**
+     * Stops accepting connections and requests, waits for every group that is
+     * already open to be answered, and then closes every connection. Requests
+     * submitted after this answer with an error.
+     */
+    @Override
+    public void close () throws IOException {
+        synchronized (open) {
+            closed = true;
+        }
+        synchronized (this) {
+            if (server != null) {
+                server.close();
+            }
+        }
+        // Delayed dispatches still run after a shutdown, so no group is dropped
+        timer.shutdown();
+        try {
+            timer.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            synchronized (open) {
+                workers.shutdown();
+            }
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        Set<Socket> live;
+        synchronized (this) {
+            live = connections;
+            connections = null;
+        }
+        if (live == null) { return; }
+        for (Socket socket : live) {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // The client already went away
+            }
+        }
+    }
+
+    /**
+     * Adds the given socket to the connections being served.
+     *
+     * @return false if the service is closed, in which case the socket is not
+     * to be served.
+     */
+    private synchronized boolean register (Socket socket) {
+        if (connections == null) { return false; }
+        connections.add(socket);
+        return true;
+    }
+
+    private synchronized void unregister (Socket socket) {
+        if (connections != null) { connections.remove(socket); }
+    }
+
+    /**
+     * Closes the given group to further requests, if it is still open, and
+     * hands it to a worker. The workers are only shut down while holding the
+     * same lock, so a group is either handed over or, if close was interrupted,
+     * answered with an error.
+     */
+    private void dispatch (Group group) {
+        synchronized (open) {
+            if (group.dispatched) { return; }
+            group.dispatched = true;
+            open.remove(group.key, group);
+            try {
+                workers.execute(() -> answer(group));
+            } catch (RejectedExecutionException e) {
+                fail(group, "the service is closed");
+            }
+        }
+    }
+
+    /**
+     * Answers every request of the given group.
+     */
+    private void answer (Group group) {
+        groupCount.incrementAndGet();
+        Terrain terrain;
+        try {
+            terrain = (group.requests.size() > 1) ? new Terrain(new MazeProblem(group.terrain)) : null;
+        } catch (RuntimeException e) {
+            fail(group, String.valueOf(e.getMessage()));
+            return;
+        }
+        for (Request request : group.requests) {
+            try {
+                List<String> solution = (terrain == null) ? Pathfinder.solve(request.problem) : terrain.solve(request.problem);
+                request.result.complete(PathfinderBatch.solvedOf(request.id, request.problem, solution));
+            } catch (RuntimeException e) {
+                request.result.complete(PathfinderBatch.errorOf(request.id, String.valueOf(e.getMessage())));
+            }
+        }
+    }
+
+    /**
+     * Answers every request of the given group with the same error.
+     */
+    private static void fail (Group group, String message) {
+        for (Request request : group.requests) {
+            request.result.complete(PathfinderBatch.errorOf(request.id, message));
+        }
+    }
+
+    /**
+     * Reads requests from the given connection until it closes, writing their
+     * responses back in order. A reader thread keeps submitting requests while
+     * earlier ones are still being answered, up to a bounded number in flight.
+     */
+    private void serve (Socket socket) {
+        BlockingQueue<CompletableFuture<String>> pending = new ArrayBlockingQueue<>(REQUESTS_PER_CONNECTION);
+        // A completed future with no value marks the end of the input
+        CompletableFuture<String> endOfInput = CompletableFuture.completedFuture(null);
+        Thread reader = null;
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            reader = new Thread(() -> {
+                try {
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        if (line.isBlank()) { continue; }
+                        pending.put(submit(line));
+                    }
+                } catch (IOException e) {
+                    // The connection was closed
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    try {
+                        pending.put(endOfInput);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "pathfinder-service-reader");
+            reader.setDaemon(true);
+            reader.start();
+            for (CompletableFuture<String> result = pending.take(); result != endOfInput; result = pending.take()) {
+                out.write(result.join());
+                out.write('\n');
+                // Hold back the flush while more responses are ready to go with this one
+                if (pending.isEmpty()) { out.flush(); }
+            }
+            out.flush();
+        } catch (IOException e) {
+            // The client went away; its outstanding requests are still answered, unread
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (reader != null) { reader.interrupt(); }
+            unregister(socket);
+        }
+    }
+
+    /**
+     * @return The given maze with its initial state, keys, and goals replaced by
+     * open tiles.
+     */
+    static String[] terrainOf (String[] maze) {
+        String[] terrain = new String[maze.length];
+        for (int row = 0; row < maze.length; row++) {
+            terrain[row] = maze[row].replace('I', '.').replace('K', '.').replace('G', '.');
+        }
+        return terrain;
+    }
+
+    /**
+     * @return A factory of daemon threads with the given name.
+     */
+    private static ThreadFactory daemon (String name) {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+
+    // Groups
+    // -----------------------------------------------------------------------------
+
+    private static class Request {
+
+        final String id;
+        final MazeProblem problem;
+        final CompletableFuture<String> result = new CompletableFuture<>();
+
+        Request (String id, MazeProblem problem) {
+            this.id = id;
+            this.problem = problem;
+        }
+
+    }
+
+    /**
+     * The requests for one terrain that arrived within one window. Requests are
+     * only added, and dispatched is only read or set, while holding the lock on
+     * the map of open groups.
+     */
+    private static class Group {
+
+        final String key;
+        final String[] terrain;
+        final List<Request> requests = new ArrayList<>();
+        boolean dispatched;
+
+        Group (String key, String[] terrain) {
+            this.key = key;
+            this.terrain = terrain;
+        }
+
+    }
+
+    /**
+     * The structures shared by every request of a group: the terrain's packed
+     * grid and regions, and the distance fields from each tile that some request
+     * starts a leg at, flooded on first use. Used by one worker at a time.
+     */
+    private static class Terrain {
+
+        final MazeGrid grid;
+        final MazeBitboard board;
+        final MazeComponents components;
+        final Map<Integer, int[]> fields = new HashMap<>();
+
+        Terrain (MazeProblem terrain) {
+            grid = new MazeGrid(terrain);
+            board = new MazeBitboard(terrain);
+            components = new MazeComponents(terrain);
+        }
+
+        /**
+         * Finds the cheapest route from the given problem's initial state to any
+         * of its keys and then to any of its goals, skipping pairs that lie in
+         * different regions without flooding from them.
+         *
+         * @return A List of Strings representing actions that solve the problem,
+         * or null if there is no solution.
+         */
+        List<String> solve (MazeProblem problem) {
+            MazeState initial = problem.getInitial();
+            int start = grid.cellOf(initial), bestCost = -1, bestKey = -1, bestGoal = -1;
+            if (start < 0) { return null; }
+            for (MazeState key : problem.getKeys()) {
+                if (!components.isConnected(initial, key)) { continue; }
+                int keyCell = grid.cellOf(key), toKey = fieldOf(start)[keyCell];
+                for (MazeState goal : problem.getGoals()) {
+                    if (!components.isConnected(key, goal)) { continue; }
+                    int goalCell = grid.cellOf(goal), cost = toKey + fieldOf(keyCell)[goalCell];
+                    if (bestCost < 0 || cost < bestCost) {
+                        bestCost = cost;
+                        bestKey = keyCell;
+                        bestGoal = goalCell;
+                    }
+                }
+            }
+            if (bestCost < 0) { return null; }
+            List<String> actions = pathTo(fieldOf(start), start, bestKey);
+            actions.addAll(pathTo(fieldOf(bestKey), bestKey, bestGoal));
+            return actions;
+        }
+
+        /**
+         * @return The distance field from the given tile, flooding it if no
+         * request has started a leg there yet.
+         */
+        private int[] fieldOf (int cell) {
+            return fields.computeIfAbsent(cell, c -> board.getDistances(grid.stateOf(c)));
+        }
+
+        /**
+         * Walks the given distance field back from the target to its source, at
+         * each tile stepping to any neighbor whose cost accounts for it.
+         */
+        private List<String> pathTo (int[] field, int source, int target) {
+            int[] cells = new int[field[target] + 1];
+            int length = 0;
+            cells[length++] = target;
+            for (int cell = target; cell != source; cells[length++] = cell) {
+                int here = cell;
+                for (int d = 0; d < MazeGrid.ACTIONS.length; d++) {
+                    int previous = grid.neighbor(here, d);
+                    if (previous >= 0 && field[previous] == field[here] - grid.cost(here)) {
+                        cell = previous;
+                        break;
+                    }
+                }
+            }
+            // The walk ran from the target back to the source
+            for (int i = 0, j = length - 1; i < j; i++, j--) {
+                int swap = cells[i];
+                cells[i] = cells[j];
+                cells[j] = swap;
+            }
+            return grid.actionsOf(cells, length);
+        }
+
+    }
+
+}
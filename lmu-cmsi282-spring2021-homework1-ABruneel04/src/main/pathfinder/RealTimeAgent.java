@@ -0,0 +1,326 @@
+package main.pathfinder;
+
+import java.util.*;
+
+/**
+ * Real-time search agent for a MazeProblem, which commits to one action at a
+ * time rather than planning a whole path up front. Each step runs a bounded A*
+ * lookahead around the agent (LSS-LRTA*), raises the learned heuristic values
+ * of the tiles it expanded to what the lookahead revealed, and then moves to
+ * the neighbor that now looks cheapest. Learned values are kept for the life
+ * of the agent, so repeated episodes on the same maze keep improving until the
+ * agent walks optimal paths.
+ * <p>
+ * States are tiles paired with whether a key has been collected, numbered
+ * (row * cols + col) * 2 + (1 if a key is held), so that the learned values of
+ * both legs live in one primitive array. An agent is not thread-safe.
+ */
+public class RealTimeAgent {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    private static final int INFINITY = Integer.MAX_VALUE / 2;
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final MazeProblem problem;
+    private final MazeGrid grid;
+    private final int lookahead;
+    private final long stepBudgetNanos;
+    private final boolean[] isKey, isGoal;
+    private final int[] keyCells, goalCells, keyToGoal;
+    private final MazeComponents components;
+    // Whether each region holds a goal, and whether it holds a key
+    private final boolean[] regionHasGoal, regionHasKey;
+    private final int[] learned;
+
+    // Per-step scratch, stamped with the step it belongs to rather than cleared;
+    // once the lookahead is over, pastCost holds the values being backed up
+    private final int[] pastCost, seenIn, closedIn;
+    private final int[] generated, closed;
+    private final LongHeap open = new LongHeap(), backup = new LongHeap();
+    private int step;
+
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * @param problem The MazeProblem that the agent will act in.
+     * @param lookahead The largest number of states expanded per step (at least 1).
+     * @param stepBudgetNanos The time allowed per step, in nanoseconds. The clock is
+     * checked before every state that is expanded or backed up; once it runs out,
+     * the lookahead is cut short, and the learning is cut short with every value
+     * not yet backed up raised only as far as is safe, and the agent moves on what
+     * it has seen. A step may overrun its budget by one expansion or backup.
+     */
+    public RealTimeAgent (MazeProblem problem, int lookahead, long stepBudgetNanos) {
+        if (lookahead < 1) {
+            throw new IllegalArgumentException("Lookahead must expand at least 1 state per step");
+        }
+        this.problem = problem;
+        this.grid = new MazeGrid(problem);
+        this.lookahead = lookahead;
+        this.stepBudgetNanos = stepBudgetNanos;
+        isKey = new boolean[grid.size()];
+        isGoal = new boolean[grid.size()];
+        keyCells = cellsOf(problem.getKeys(), isKey);
+        goalCells = cellsOf(problem.getGoals(), isGoal);
+        keyToGoal = new int[keyCells.length];
+        for (int i = 0; i < keyCells.length; i++) {
+            keyToGoal[i] = nearest(keyCells[i], goalCells);
+        }
+        components = problem.getComponents();
+        regionHasGoal = regionsOf(problem.getGoals());
+        regionHasKey = regionsOf(problem.getKeys());
+        learned = new int[2 * grid.size()];
+        Arrays.fill(learned, -1);
+        pastCost = new int[learned.length];
+        seenIn = new int[learned.length];
+        closedIn = new int[learned.length];
+        generated = new int[learned.length];
+        closed = new int[learned.length];
+    }
+
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Plans a single step from the given state, within the agent's lookahead and
+     * time budget, and updates the learned values along the way.
+     *
+     * @param current The tile that the agent is on.
+     * @param hasKey Whether the agent has collected a key yet.
+     * @return The action to take next (one of "U", "D", "L", "R"), or null if the
+     * agent is already done (on a goal with a key) or can never get there.
+     */
+    public String nextAction (MazeState current, boolean hasKey) {
+        int cell = grid.cellOf(current);
+        if (cell < 0) { return null; }
+        int start = 2 * cell + ((hasKey || isKey[cell]) ? 1 : 0);
+        if (isTarget(start) || !canFinish(current, start % 2 == 1)) { return null; }
+
+        long deadline = System.nanoTime() + stepBudgetNanos;
+        int generatedCount = 0, closedCount = 0;
+        step++;
+        open.clear();
+        pastCost[start] = 0;
+        seenIn[start] = step;
+        generated[generatedCount++] = start;
+        open.push(LongHeap.pack(heuristic(start), start));
+
+        // Lookahead: A* until a target is next up, or the lookahead or time runs out;
+        // the start state is always expanded, so that there is a move to make
+        while (!open.isEmpty()) {
+            int state = LongHeap.id(open.peek());
+            if (closedIn[state] == step) { open.pop(); continue; }
+            if (isTarget(state) || closedCount == lookahead ||
+                (closedCount > 0 && System.nanoTime() > deadline)) {
+                break;
+            }
+            open.pop();
+            closedIn[state] = step;
+            closed[closedCount++] = state;
+            for (int d = 0; d < MazeGrid.ACTIONS.length; d++) {
+                int next = successor(state, d);
+                if (next < 0) { continue; }
+                int cost = pastCost[state] + grid.cost(next / 2);
+                if (seenIn[next] != step) {
+                    seenIn[next] = step;
+                    generated[generatedCount++] = next;
+                } else if (cost >= pastCost[next]) {
+                    continue;
+                }
+                pastCost[next] = cost;
+                open.push(LongHeap.pack(cost + heuristic(next), next));
+            }
+        }
+
+        // Learning: every expanded state's value becomes the cheapest way from it
+        // out to the lookahead's frontier plus the frontier state's value, found
+        // with a Dijkstra backwards from the frontier. An expanded state's value is
+        // final once it is popped, after which it no longer counts as expanded
+        for (int i = 0; i < closedCount; i++) {
+            pastCost[closed[i]] = INFINITY;
+        }
+        backup.clear();
+        for (int i = 0; i < generatedCount; i++) {
+            if (closedIn[generated[i]] != step) {
+                backup.push(LongHeap.pack(heuristic(generated[i]), generated[i]));
+            }
+        }
+        while (!backup.isEmpty() && System.nanoTime() <= deadline) {
+            long entry = backup.pop();
+            int state = LongHeap.id(entry), value = LongHeap.cost(entry);
+            if (value > ((closedIn[state] == step) ? pastCost[state] : learned[state])) { continue; }
+            if (closedIn[state] == step) {
+                learned[state] = value;
+                closedIn[state] = 0;
+            }
+            int stateCell = state / 2, enter = grid.cost(stateCell);
+            for (int d = 0; d < MazeGrid.ACTIONS.length; d++) {
+                int prevCell = grid.neighbor(stateCell, d);
+                if (prevCell < 0) { continue; }
+                // Only key-holding states lead into key-holding states, except for
+                // the step that collects the key
+                for (int layer = state % 2; layer >= 0; layer--) {
+                    int prev = 2 * prevCell + layer;
+                    if (closedIn[prev] != step || (layer == 0 && state % 2 == 1 && !isKey[stateCell])) {
+                        continue;
+                    }
+                    if (value + enter < pastCost[prev]) {
+                        pastCost[prev] = value + enter;
+                        backup.push(LongHeap.pack(pastCost[prev], prev));
+                    }
+                }
+            }
+        }
+        // States never popped either cannot reach the frontier at all or, if time
+        // ran out, would have been popped at no less than the heap's least value
+        int floor = backup.isEmpty() ? INFINITY : LongHeap.cost(backup.peek());
+        for (int i = 0; i < closedCount; i++) {
+            if (closedIn[closed[i]] == step) {
+                learned[closed[i]] = Math.max(learned[closed[i]], floor);
+            }
+        }
+
+        // Acting: move to the neighbor that now looks cheapest
+        int bestAction = -1, bestValue = INFINITY;
+        for (int d = 0; d < MazeGrid.ACTIONS.length; d++) {
+            int next = successor(start, d);
+            if (next >= 0 && grid.cost(next / 2) + heuristic(next) < bestValue) {
+                bestValue = grid.cost(next / 2) + heuristic(next);
+                bestAction = d;
+            }
+        }
+        return (bestAction < 0) ? null : MazeGrid.ACTIONS[bestAction];
+    }
+
+    /**
+     * Runs one episode from the initial state, acting one step at a time until a
+     * goal is reached with a key in hand. The values learned during the episode
+     * carry over into the next one.
+     *
+     * @param maxSteps The most actions to take before giving up on the episode.
+     * @return A List of Strings representing the actions taken, of the format:
+     * ["R", "R", "L", ...], or null if no goal was reached within maxSteps.
+     */
+    public List<String> runEpisode (int maxSteps) {
+        List<String> actions = new ArrayList<>();
+        MazeState current = problem.getInitial();
+        boolean hasKey = false;
+        while (actions.size() < maxSteps) {
+            String action = nextAction(current, hasKey);
+            if (action == null) {
+                int cell = grid.cellOf(current);
+                return (cell >= 0 && isGoal[cell] && (hasKey || isKey[cell])) ? actions : null;
+            }
+            int cell = grid.neighbor(grid.cellOf(current), Arrays.asList(MazeGrid.ACTIONS).indexOf(action));
+            hasKey |= isKey[cell];
+            current = grid.stateOf(cell);
+            actions.add(action);
+        }
+        int cell = grid.cellOf(current);
+        return (isGoal[cell] && hasKey) ? actions : null;
+    }
+
+    /**
+     * @param state The tile that the agent is on.
+     * @param hasKey Whether the agent has collected a key yet.
+     * @return The value learned for the state: a lower bound on the cost of reaching
+     * a goal with a key from it, which starts as the Manhattan estimate.
+     */
+    public int getLearnedValue (MazeState state, boolean hasKey) {
+        int cell = grid.cellOf(state);
+        return (cell < 0) ? INFINITY : heuristic(2 * cell + (hasKey ? 1 : 0));
+    }
+
+    /**
+     * @return Whether the given state is one in which the agent is done.
+     */
+    private boolean isTarget (int state) {
+        return state % 2 == 1 && isGoal[state / 2];
+    }
+
+    /**
+     * @return Whether a goal (and, if need be, a key) can be reached from the given
+     * state at all; if not, the learned values would climb forever.
+     */
+    private boolean canFinish (MazeState current, boolean hasKey) {
+        int region = components.getLabel(current);
+        return region >= 0 && regionHasGoal[region] && (hasKey || regionHasKey[region]);
+    }
+
+    /**
+     * @return The state reached by taking the action with the given index from the
+     * given state, or -1 if there is a wall in the way.
+     */
+    private int successor (int state, int d) {
+        int next = grid.neighbor(state / 2, d);
+        if (next < 0) { return -1; }
+        return 2 * next + ((state % 2 == 1 || isKey[next]) ? 1 : 0);
+    }
+
+    /**
+     * @return The learned value of the given state, initializing it to the Manhattan
+     * estimate (to the nearest goal, by way of the best key if one is still needed)
+     * the first time it is asked for.
+     */
+    private int heuristic (int state) {
+        if (learned[state] < 0) {
+            int cell = state / 2;
+            if (state % 2 == 1) {
+                learned[state] = nearest(cell, goalCells);
+            } else {
+                int best = INFINITY;
+                for (int i = 0; i < keyCells.length; i++) {
+                    best = Math.min(best, manhattan(cell, keyCells[i]) + keyToGoal[i]);
+                }
+                learned[state] = best;
+            }
+        }
+        return learned[state];
+    }
+
+    /**
+     * @return The Manhattan distance from the given tile to the nearest of the others.
+     */
+    private int nearest (int cell, int[] cells) {
+        int best = INFINITY;
+        for (int other : cells) {
+            best = Math.min(best, manhattan(cell, other));
+        }
+        return best;
+    }
+
+    private int manhattan (int one, int two) {
+        return Math.abs(one / grid.cols - two / grid.cols) + Math.abs(one % grid.cols - two % grid.cols);
+    }
+
+    /**
+     * @return Whether each region holds any of the given states.
+     */
+    private boolean[] regionsOf (Set<MazeState> states) {
+        boolean[] holds = new boolean[components.count()];
+        for (MazeState state : states) {
+            int region = components.getLabel(state);
+            if (region >= 0) { holds[region] = true; }
+        }
+        return holds;
+    }
+
+    /**
+     * @return The tiles of the given states, each of which is also marked in the given array.
+     */
+    private int[] cellsOf (Set<MazeState> states, boolean[] marks) {
+        int[] cells = new int[states.size()];
+        int i = 0;
+        for (MazeState state : states) {
+            cells[i] = grid.cellOf(state);
+            marks[cells[i++]] = true;
+        }
+        return cells;
+    }
+
+}
@@ -0,0 +1,209 @@
+package main.pathfinder;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.*;
+
+/**
+ * Off-heap search state for grids addressed by long tile index, so that searches
+ * over a {@link LongGrid} are neither capped at 2^31 tiles nor a burden on the
+ * garbage collector. Each tile has an 8-byte slot holding its cost so far
+ * (stamped with the search it belongs to, so nothing is cleared between
+ * searches) and a 1-byte slot holding the direction it was entered from and
+ * whether it is closed; the open list is a binary heap of 16-byte entries.
+ * <p>
+ * Memory is reserved in direct-buffer chunks on the first write to each one,
+ * so a search only pays for the parts of the grid it touches, and chunks are
+ * kept for the searches that follow. An arena serves one search at a time.
+ */
+public class SearchArena {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    static final int NO_PARENT = 7;
+    private static final int CLOSED = 8;
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final Region costs = new Region(), flags = new Region(), heap = new Region();
+    private int round;
+    private long heapSize;
+
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Forgets the state of the last search, in constant time.
+     */
+    void begin () {
+        if (round == Integer.MAX_VALUE) {
+            costs.clear();
+            round = 0;
+        }
+        round++;
+        heapSize = 0;
+    }
+
+    /**
+     * @return The cost at which the given tile was reached in this search, or
+     * Integer.MAX_VALUE if it was not reached.
+     */
+    int getCost (long tile) {
+        long slot = costs.getLong(tile << 3);
+        return ((int) (slot >>> 32) == round) ? (int) slot : Integer.MAX_VALUE;
+    }
+
+    /**
+     * @return The index into MazeGrid.ACTIONS of the action that entered the given
+     * reached tile, or NO_PARENT if it is where the search started.
+     */
+    int getParent (long tile) {
+        return flags.getByte(tile) & 7;
+    }
+
+    /**
+     * @return Whether the given reached tile has been expanded.
+     */
+    boolean isClosed (long tile) {
+        return (flags.getByte(tile) & CLOSED) != 0;
+    }
+
+    /**
+     * Records that the given tile was reached at the given cost by the given action.
+     */
+    void reach (long tile, int cost, int parent) {
+        costs.putLong(tile << 3, ((long) round << 32) | cost);
+        flags.putByte(tile, (byte) parent);
+    }
+
+    void close (long tile) {
+        flags.putByte(tile, (byte) (flags.getByte(tile) | CLOSED));
+    }
+
+    boolean isEmpty () {
+        return heapSize == 0;
+    }
+
+    /**
+     * Adds the given tile to the open list with the given priority.
+     */
+    void push (long priority, long tile) {
+        long i = heapSize++;
+        while (i > 0) {
+            long up = (i - 1) >>> 1, upPriority = heap.getLong(up << 4);
+            if (upPriority <= priority) { break; }
+            heap.putLong(i << 4, upPriority);
+            heap.putLong((i << 4) + 8, heap.getLong((up << 4) + 8));
+            i = up;
+        }
+        heap.putLong(i << 4, priority);
+        heap.putLong((i << 4) + 8, tile);
+    }
+
+    /**
+     * @return The tile of lowest priority, which is removed from the open list.
+     */
+    long pop () {
+        long top = heap.getLong(8), last = --heapSize,
+             priority = heap.getLong(last << 4), tile = heap.getLong((last << 4) + 8);
+        long i = 0;
+        while (2 * i + 1 < heapSize) {
+            long child = 2 * i + 1;
+            if (child + 1 < heapSize && heap.getLong((child + 1) << 4) < heap.getLong(child << 4)) { child++; }
+            long childPriority = heap.getLong(child << 4);
+            if (childPriority >= priority) { break; }
+            heap.putLong(i << 4, childPriority);
+            heap.putLong((i << 4) + 8, heap.getLong((child << 4) + 8));
+            i = child;
+        }
+        heap.putLong(i << 4, priority);
+        heap.putLong((i << 4) + 8, tile);
+        return top;
+    }
+
+    /**
+     * @return The off-heap memory reserved by this arena so far, in bytes.
+     */
+    public long getReservedBytes () {
+        return costs.reserved + flags.reserved + heap.reserved;
+    }
+
+
+    // Region
+    // -----------------------------------------------------------------------------
+
+    /**
+     * A sparse, zero-initialized run of off-heap bytes addressed by long offset.
+     * Chunks are reserved on the first write to them, and reads from chunks never
+     * written return 0. A two-level directory keeps the on-heap bookkeeping small
+     * however far apart the touched offsets lie.
+     */
+    private static class Region {
+
+        private static final int CHUNK_SHIFT = 16, PAGE_SHIFT = 12;
+        private static final long CHUNK_MASK = (1L << CHUNK_SHIFT) - 1;
+        private static final int PAGE_MASK = (1 << PAGE_SHIFT) - 1;
+
+        private final Map<Long, ByteBuffer[]> pages = new HashMap<>();
+        private ByteBuffer[] lastPage;
+        private long lastPageIndex = -1;
+        long reserved;
+
+        long getLong (long offset) {
+            ByteBuffer chunk = chunk(offset, false);
+            return (chunk == null) ? 0 : chunk.getLong((int) (offset & CHUNK_MASK));
+        }
+
+        void putLong (long offset, long value) {
+            chunk(offset, true).putLong((int) (offset & CHUNK_MASK), value);
+        }
+
+        byte getByte (long offset) {
+            ByteBuffer chunk = chunk(offset, false);
+            return (chunk == null) ? 0 : chunk.get((int) (offset & CHUNK_MASK));
+        }
+
+        void putByte (long offset, byte value) {
+            chunk(offset, true).put((int) (offset & CHUNK_MASK), value);
+        }
+
+        /**
+         * Zeroes every chunk reserved so far.
+         */
+        void clear () {
+            byte[] zeroes = new byte[1 << CHUNK_SHIFT];
+            for (ByteBuffer[] page : pages.values()) {
+                for (ByteBuffer chunk : page) {
+                    if (chunk != null) { chunk.put(0, zeroes); }
+                }
+            }
+        }
+
+        /**
+         * @return The chunk holding the given offset, reserving it first if asked
+         * to, or null if it has not been reserved.
+         */
+        private ByteBuffer chunk (long offset, boolean reserve) {
+            long chunkIndex = offset >>> CHUNK_SHIFT, pageIndex = chunkIndex >>> PAGE_SHIFT;
+            if (pageIndex != lastPageIndex) {
+                ByteBuffer[] page = pages.get(pageIndex);
+                if (page == null) {
+                    if (!reserve) { return null; }
+                    page = new ByteBuffer[1 << PAGE_SHIFT];
+                    pages.put(pageIndex, page);
+                }
+                lastPage = page;
+                lastPageIndex = pageIndex;
+            }
+            int slot = (int) chunkIndex & PAGE_MASK;
+            if (lastPage[slot] == null && reserve) {
+                lastPage[slot] = ByteBuffer.allocateDirect(1 << CHUNK_SHIFT).order(ByteOrder.nativeOrder());
+                reserved += 1 << CHUNK_SHIFT;
+            }
+            return lastPage[slot];
+        }
+
+    }
+
+}
@@ -0,0 +1,390 @@
+package main.pathfinder;
+
+import java.util.*;
+
+/**
+ * Simple subgoal graph over the open tiles of a MazeProblem that never changes,
+ * for answering point-to-point queries by searching subgoals rather than tiles.
+ * A subgoal is placed on every open tile that sits diagonally next to a convex
+ * wall corner, which is where cheapest paths around walls turn. Each subgoal is
+ * joined to every subgoal it can reach without passing through another one, by
+ * the cheapest such path, so that mud is paid for exactly: an arc is a Dijkstra
+ * result, not a straight line, and the subgoal graph keeps every cheapest path
+ * of the maze. A query joins its two end tiles to the subgoals around them the
+ * same way, and then runs A* over subgoals alone.
+ */
+public class SubgoalGraph {
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private final MazeGrid grid;
+    private final MazeComponents components;
+    private final int[] subgoalOf, cellOf;
+    private final int[] arcStart, arcTarget, arcCost, arcMoves;
+    private final byte[] moves;
+    private final long buildNanos;
+    private final ThreadLocal<Scratch> scratch;
+
+
+    // Constructor
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Places the subgoals of the given MazeProblem and joins them.
+     *
+     * @param problem The MazeProblem whose open tiles are to be indexed.
+     */
+    public SubgoalGraph (MazeProblem problem) {
+        long started = System.nanoTime();
+        grid = new MazeGrid(problem);
+        components = problem.getComponents();
+        subgoalOf = new int[grid.size()];
+        int n = 0;
+        for (int cell = 0; cell < grid.size(); cell++) {
+            subgoalOf[cell] = (grid.isOpen(cell) && isCorner(cell)) ? n++ : -1;
+        }
+        cellOf = new int[n];
+        for (int cell = 0; cell < grid.size(); cell++) {
+            if (subgoalOf[cell] >= 0) { cellOf[subgoalOf[cell]] = cell; }
+        }
+
+        // Join every subgoal to those it reaches directly, remembering the moves
+        // of each arc so that paths over the graph can be expanded again
+        arcStart = new int[n + 1];
+        int arcs = 0, length = 0;
+        int[] targets = new int[4 * n + 1], costs = new int[4 * n + 1], starts = new int[4 * n + 1];
+        byte[] path = new byte[64];
+        int[] cells = new int[16];
+        Flood flood = new Flood(grid.size());
+        for (int s = 0; s < n; s++) {
+            arcStart[s] = arcs;
+            flood.run(cellOf[s], -1, false);
+            for (int i = 0; i < flood.foundCount; i++) {
+                int end = flood.found[i];
+                if (end == cellOf[s]) { continue; }
+                if (arcs + 1 == targets.length) {
+                    targets = Arrays.copyOf(targets, arcs * 2);
+                    costs = Arrays.copyOf(costs, arcs * 2);
+                    starts = Arrays.copyOf(starts, arcs * 2);
+                }
+                int walked = flood.walkBack(end, cells);
+                cells = flood.cells;
+                if (length + walked > path.length) {
+                    path = Arrays.copyOf(path, Math.max(path.length * 2, length + walked));
+                }
+                for (int j = walked - 1; j > 0; j--) {
+                    path[length++] = (byte) grid.action(cells[j], cells[j - 1]);
+                }
+                targets[arcs] = subgoalOf[end];
+                costs[arcs] = flood.dist[end];
+                starts[arcs++] = length - (walked - 1);
+            }
+        }
+        arcStart[n] = arcs;
+        starts[arcs] = length;
+        arcTarget = Arrays.copyOf(targets, arcs);
+        arcCost = Arrays.copyOf(costs, arcs);
+        arcMoves = Arrays.copyOf(starts, arcs + 1);
+        moves = Arrays.copyOf(path, length);
+        int subgoals = n, size = grid.size();
+        scratch = ThreadLocal.withInitial(() -> new Scratch(subgoals, size));
+        buildNanos = System.nanoTime() - started;
+    }
+
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Returns the cost of the cheapest path between the two given states.
+     *
+     * @param from The MazeState to start from.
+     * @param to The MazeState to reach.
+     * @return The cost of the cheapest path, or -1 if there is none.
+     */
+    public int getDistance (MazeState from, MazeState to) {
+        int s = grid.cellOf(from), t = grid.cellOf(to);
+        if (s < 0 || t < 0 || !components.isConnected(from, to)) { return -1; }
+        Scratch sc = scratch.get();
+        return (s == t) ? 0 : sc.cost[search(s, t, sc)];
+    }
+
+    /**
+     * Returns the cheapest sequence of actions between the two given states.
+     *
+     * @param from The MazeState to start from.
+     * @param to The MazeState to reach.
+     * @return A List of Strings representing actions that lead from one state to
+     * the other, of the format: ["R", "R", "L", ...], or null if there is none
+     */
+    public List<String> query (MazeState from, MazeState to) {
+        int s = grid.cellOf(from), t = grid.cellOf(to);
+        if (s < 0 || t < 0 || !components.isConnected(from, to)) { return null; }
+        List<String> actions = new ArrayList<>();
+        if (s == t) { return actions; }
+        Scratch sc = scratch.get();
+        int goal = cellOf.length + 1, start = cellOf.length;
+
+        // Collect the nodes of the path found, goal first
+        Deque<Integer> nodes = new ArrayDeque<>();
+        for (int node = search(s, t, sc); node != start; node = sc.parent[node]) {
+            nodes.push(node);
+        }
+        int prev = start;
+        for (int node : nodes) {
+            if (prev == start && node == goal) {
+                appendForward(sc.forward, t, actions);
+            } else if (prev == start) {
+                appendForward(sc.forward, cellOf[node], actions);
+            } else if (node == goal) {
+                appendBackward(sc.backward, cellOf[prev], actions);
+            } else {
+                for (int i = arcMoves[sc.via[node]]; i < arcMoves[sc.via[node] + 1]; i++) {
+                    actions.add(MazeGrid.ACTIONS[moves[i]]);
+                }
+            }
+            prev = node;
+        }
+        return actions;
+    }
+
+    /**
+     * @return The number of subgoals placed.
+     */
+    public int getSubgoalCount () {
+        return cellOf.length;
+    }
+
+    /**
+     * @return The number of arcs between subgoals.
+     */
+    public int getArcCount () {
+        return arcTarget.length;
+    }
+
+    /**
+     * @return The time spent building this graph, in milliseconds.
+     */
+    public long getBuildMillis () {
+        return buildNanos / 1_000_000;
+    }
+
+    /**
+     * @return The approximate size of this graph's index arrays, in bytes.
+     */
+    public long getIndexBytes () {
+        return 4L * (subgoalOf.length + cellOf.length + arcStart.length + 3L * arcTarget.length + 1) +
+               moves.length + grid.size();
+    }
+
+    /**
+     * Joins the two given tiles to the subgoals around them and runs A* over the
+     * subgoals, in which the start and goal tiles are the nodes after the last
+     * subgoal. The two tiles must be connected and distinct.
+     *
+     * @return The goal node, whose cost and parent chain are left in the scratch space.
+     */
+    private int search (int s, int t, Scratch sc) {
+        int start = cellOf.length, goal = start + 1;
+        sc.round++;
+        int direct = sc.forward.run(s, t, false);
+        sc.backward.run(t, -1, true);
+        for (int i = 0; i < sc.backward.foundCount; i++) {
+            int subgoal = subgoalOf[sc.backward.found[i]];
+            sc.exitRound[subgoal] = sc.round;
+            sc.exitCost[subgoal] = sc.backward.dist[sc.backward.found[i]];
+        }
+
+        LongHeap open = sc.open;
+        open.clear();
+        sc.reach(start, 0, -1, -1, 0, open);
+        while (!open.isEmpty()) {
+            long entry = open.pop();
+            int node = LongHeap.id(entry);
+            if (sc.closedRound[node] == sc.round) { continue; }
+            sc.closedRound[node] = sc.round;
+            if (node == goal) { return goal; }
+            int cost = sc.cost[node];
+            if (node == start) {
+                if (direct >= 0) { sc.reach(goal, direct, start, -1, 0, open); }
+                for (int i = 0; i < sc.forward.foundCount; i++) {
+                    int cell = sc.forward.found[i];
+                    sc.reach(subgoalOf[cell], sc.forward.dist[cell], start, -1, manhattan(cell, t), open);
+                }
+                continue;
+            }
+            if (sc.exitRound[node] == sc.round) {
+                sc.reach(goal, cost + sc.exitCost[node], node, -1, 0, open);
+            }
+            for (int arc = arcStart[node]; arc < arcStart[node + 1]; arc++) {
+                int next = arcTarget[arc];
+                sc.reach(next, cost + arcCost[arc], node, arc, manhattan(cellOf[next], t), open);
+            }
+        }
+        throw new IllegalStateException("No path between connected tiles " + s + " and " + t);
+    }
+
+    /**
+     * Appends the moves from the start of the last forward flood to the given tile.
+     */
+    private void appendForward (Flood flood, int end, List<String> actions) {
+        int walked = flood.walkBack(end, flood.cells);
+        for (int j = walked - 1; j > 0; j--) {
+            actions.add(MazeGrid.ACTIONS[grid.action(flood.cells[j], flood.cells[j - 1])]);
+        }
+    }
+
+    /**
+     * Appends the moves from the given tile to the start of the last backward flood.
+     */
+    private void appendBackward (Flood flood, int begin, List<String> actions) {
+        int walked = flood.walkBack(begin, flood.cells);
+        for (int j = 1; j < walked; j++) {
+            actions.add(MazeGrid.ACTIONS[grid.action(flood.cells[j - 1], flood.cells[j])]);
+        }
+    }
+
+    /**
+     * @return Whether the given open tile sits diagonally next to a convex wall
+     * corner, i.e., some diagonal neighbor is blocked while both of the tiles
+     * between them are open.
+     */
+    private boolean isCorner (int cell) {
+        int col = cell % grid.cols, row = cell / grid.cols;
+        for (int dc = -1; dc <= 1; dc += 2) {
+            for (int dr = -1; dr <= 1; dr += 2) {
+                if (!isOpen(col + dc, row + dr) && isOpen(col + dc, row) && isOpen(col, row + dr)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean isOpen (int col, int row) {
+        return col >= 0 && col < grid.cols && row >= 0 && row < grid.rows && grid.isOpen(row * grid.cols + col);
+    }
+
+    private int manhattan (int one, int two) {
+        return Math.abs(one / grid.cols - two / grid.cols) + Math.abs(one % grid.cols - two % grid.cols);
+    }
+
+
+    // Floods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Dijkstra over tiles that never passes through a subgoal: subgoals other than
+     * the start are settled and recorded, but not expanded. Run backwards, the
+     * cost of a tile is that of the path from it to the start rather than the
+     * other way round, i.e., the cost of every tile entered after it.
+     */
+    private class Flood {
+
+        int[] dist, round, parent, found = new int[16], cells = new int[16];
+        int rounds, foundCount;
+        LongHeap heap = new LongHeap();
+
+        Flood (int size) {
+            dist = new int[size];
+            round = new int[size];
+            parent = new int[size];
+        }
+
+        /**
+         * @param source The tile to flood from.
+         * @param target A tile at which to stop the flood once it is settled, or -1.
+         * @param backward Whether to flood backwards.
+         * @return The cost between the source and target, or -1 if the flood never
+         * settled the target.
+         */
+        int run (int source, int target, boolean backward) {
+            rounds++;
+            foundCount = 0;
+            heap.clear();
+            round[source] = rounds;
+            dist[source] = 0;
+            parent[source] = -1;
+            heap.push(LongHeap.pack(0, source));
+            while (!heap.isEmpty()) {
+                long entry = heap.pop();
+                int cell = LongHeap.id(entry), d = LongHeap.cost(entry);
+                if (d > dist[cell]) { continue; }
+                if (cell == target) { return d; }
+                if (subgoalOf[cell] >= 0) {
+                    if (foundCount == found.length) { found = Arrays.copyOf(found, foundCount * 2); }
+                    found[foundCount++] = cell;
+                    if (cell != source) { continue; }
+                }
+                for (int dir = 0; dir < MazeGrid.ACTIONS.length; dir++) {
+                    int next = grid.neighbor(cell, dir);
+                    if (next < 0) { continue; }
+                    int newDist = d + grid.cost(backward ? cell : next);
+                    if (round[next] != rounds || newDist < dist[next]) {
+                        round[next] = rounds;
+                        dist[next] = newDist;
+                        parent[next] = cell;
+                        heap.push(LongHeap.pack(newDist, next));
+                    }
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Follows parents from the given tile back to the source of the last run.
+         *
+         * @return The number of tiles walked, both ends included, which are left
+         * in the cells field from the given tile back to the source.
+         */
+        int walkBack (int end, int[] into) {
+            cells = into;
+            int walked = 0;
+            for (int cell = end; cell != -1; cell = parent[cell]) {
+                if (walked == cells.length) { cells = Arrays.copyOf(cells, walked * 2); }
+                cells[walked++] = cell;
+            }
+            return walked;
+        }
+
+    }
+
+    /**
+     * Per-thread scratch space of the query search, reset between queries by
+     * bumping a round counter instead of clearing its arrays.
+     */
+    private class Scratch {
+
+        Flood forward, backward;
+        int[] cost, parent, via, reachedRound, closedRound, exitCost, exitRound;
+        int round;
+        LongHeap open = new LongHeap();
+
+        Scratch (int subgoals, int size) {
+            forward = new Flood(size);
+            backward = new Flood(size);
+            cost = new int[subgoals + 2];
+            parent = new int[subgoals + 2];
+            via = new int[subgoals + 2];
+            reachedRound = new int[subgoals + 2];
+            closedRound = new int[subgoals + 2];
+            exitCost = new int[subgoals];
+            exitRound = new int[subgoals];
+        }
+
+        /**
+         * Records the given cost to the given node if it beats the one known this
+         * round, and queues the node with the given estimate of its remaining cost.
+         */
+        void reach (int node, int newCost, int from, int arc, int estimate, LongHeap open) {
+            if (reachedRound[node] == round && cost[node] <= newCost) { return; }
+            reachedRound[node] = round;
+            cost[node] = newCost;
+            parent[node] = from;
+            via[node] = arc;
+            open.push(LongHeap.pack(newCost + estimate, node));
+        }
+
+    }
+
+}
@@ -0,0 +1,115 @@
+package test.pathfinder;
+
+import java.util.*;
+import java.util.function.BiConsumer;
+import main.pathfinder.*;
+
+/**
+ * Benchmark harness for the maze preprocessing structures: builds each one on a
+ * randomly generated maze and reports its preprocessing time, index size, and
+ * query latency. Run with optional arguments: SIZE QUERIES SEED
+ */
+public class PathfinderBenchmark {
+
+    public static void main (String[] args) {
+        int size = (args.length > 0) ? Integer.parseInt(args[0]) : 200,
+            queries = (args.length > 1) ? Integer.parseInt(args[1]) : 1000;
+        long seed = (args.length > 2) ? Long.parseLong(args[2]) : 282;
+        Random rng = new Random(seed);
+        String[] maze = createRandomMaze(size, size, 0.25, 0.1, rng);
+        MazeProblem prob = new MazeProblem(maze);
+        List<MazeState[]> pairs = createQueries(prob, queries, rng);
+
+        System.out.println("================================");
+        System.out.println("Maze: " + size + " x " + size + ", " + pairs.size() + " queries");
+        System.out.println("================================");
+
+        // Baseline: a fresh single-source flood per query, no preprocessing
+        MazeBitboard board = new MazeBitboard(prob);
+        report("Flood fill (no index)", 0, 0,
+               time(pairs, (from, to) -> board.getDistances(from)), pairs.size());
+
+        // Contraction hierarchy
+        ContractionHierarchy ch = new ContractionHierarchy(prob);
+        report("Contraction hierarchy (" + ch.getShortcutCount() + " shortcuts)",
+               ch.getBuildMillis(), ch.getIndexBytes(), time(pairs, ch::query), pairs.size());
+
+        // Subgoal graph
+        SubgoalGraph sg = new SubgoalGraph(prob);
+        report("Subgoal graph (" + sg.getSubgoalCount() + " subgoals, " + sg.getArcCount() + " arcs)",
+               sg.getBuildMillis(), sg.getIndexBytes(), time(pairs, sg::query), pairs.size());
+
+        // Compressed path databases, in each target order, with and without ties
+        // between first moves
+        for (CompressedPathDatabase.Ordering ordering : CompressedPathDatabase.Ordering.values()) {
+            for (boolean exploitTies : new boolean[] {false, true}) {
+                CompressedPathDatabase cpd = new CompressedPathDatabase(prob, Runtime.getRuntime().availableProcessors(), exploitTies, ordering);
+                report("Path database (" + ordering + (exploitTies ? ", ties" : "") + ", " + cpd.getRunCount() + " runs)",
+                       cpd.getBuildMillis(), cpd.getIndexBytes(), time(pairs, cpd::query), pairs.size());
+            }
+        }
+    }
+
+    /**
+     * Runs the given query over every pair once to warm up, then again timed.
+     *
+     * @return The total time of the timed run, in nanoseconds.
+     */
+    private static long time (List<MazeState[]> pairs, BiConsumer<MazeState, MazeState> query) {
+        for (MazeState[] pair : pairs) {
+            query.accept(pair[0], pair[1]);
+        }
+        long started = System.nanoTime();
+        for (MazeState[] pair : pairs) {
+            query.accept(pair[0], pair[1]);
+        }
+        return System.nanoTime() - started;
+    }
+
+    /**
+     * Prints one line of the benchmark report.
+     */
+    private static void report (String name, long buildMillis, long indexBytes, long queryNanos, int queries) {
+        System.out.printf("%-48s build %7d ms | index %9d KB | query %9.2f us%n",
+            name, buildMillis, indexBytes / 1024, queryNanos / 1000.0 / Math.max(queries, 1));
+    }
+
+    /**
+     * Creates a random maze with walls along its edges, an initial state, a key,
+     * and a goal, in which every other tile is a wall or mud with the given odds.
+     */
+    public static String[] createRandomMaze (int cols, int rows, double wallOdds, double mudOdds, Random rng) {
+        char[][] tiles = new char[rows][cols];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                double roll = rng.nextDouble();
+                tiles[r][c] = (r == 0 || c == 0 || r == rows - 1 || c == cols - 1 || roll < wallOdds) ? 'X'
+                            : (roll < wallOdds + mudOdds) ? 'M' : '.';
+            }
+        }
+        tiles[1][1] = 'I';
+        tiles[1][cols - 2] = 'K';
+        tiles[rows - 2][cols - 2] = 'G';
+        String[] result = new String[rows];
+        for (int r = 0; r < rows; r++) {
+            result[r] = new String(tiles[r]);
+        }
+        return result;
+    }
+
+    /**
+     * Picks the given number of random (source, target) pairs of open tiles.
+     */
+    public static List<MazeState[]> createQueries (MazeProblem prob, int queries, Random rng) {
+        List<MazeState[]> pairs = new ArrayList<>();
+        while (pairs.size() < queries) {
+            MazeState from = new MazeState(rng.nextInt(prob.getCols()), rng.nextInt(prob.getRows())),
+                      to   = new MazeState(rng.nextInt(prob.getCols()), rng.nextInt(prob.getRows()));
+            if (!prob.isWall(from.col, from.row) && !prob.isWall(to.col, to.row)) {
+                pairs.add(new MazeState[] {from, to});
+            }
+        }
+        return pairs;
+    }
+
+}
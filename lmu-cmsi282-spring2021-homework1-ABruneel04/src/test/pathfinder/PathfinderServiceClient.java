@@ -0,0 +1,125 @@
+package test.pathfinder;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import main.pathfinder.*;
+
+/**
+ * Load-test client for a {@link PathfinderService} listening on this machine:
+ * opens the given number of connections, each of which pipelines its share of
+ * requests over one randomly generated terrain with random endpoints, and
+ * reports throughput and latency percentiles. Run with optional arguments:
+ * PORT CONNECTIONS REQUESTS SIZE SEED
+ */
+public class PathfinderServiceClient {
+
+    public static void main (String[] args) throws Exception {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : 2820,
+            connections = (args.length > 1) ? Integer.parseInt(args[1]) : 8,
+            requests = (args.length > 2) ? Integer.parseInt(args[2]) : 1000,
+            size = (args.length > 3) ? Integer.parseInt(args[3]) : 100;
+        long seed = (args.length > 4) ? Long.parseLong(args[4]) : 282;
+        Random rng = new Random(seed);
+        String[] terrain = PathfinderBenchmark.createRandomMaze(size, size, 0.25, 0.1, rng);
+        for (int row = 0; row < size; row++) {
+            terrain[row] = terrain[row].replace('I', '.').replace('K', '.').replace('G', '.');
+        }
+        List<String> records = new ArrayList<>();
+        for (int i = 0; i < requests; i++) {
+            records.add(createRecord(i, terrain, rng));
+        }
+
+        long[] latencies = new long[requests];
+        int[] unsolved = new int[1];
+        List<Thread> clients = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int c = 0; c < connections; c++) {
+            int first = c;
+            clients.add(new Thread(() -> drive(port, records, first, connections, latencies, unsolved)));
+        }
+        clients.forEach(Thread::start);
+        for (Thread client : clients) {
+            client.join();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        Arrays.sort(latencies);
+        System.out.println("================================");
+        System.out.println("Terrain: " + size + " x " + size + ", " + requests + " requests over " + connections + " connections");
+        System.out.println("================================");
+        System.out.printf("throughput %9.1f req/s | p50 %8.2f ms | p99 %8.2f ms | max %8.2f ms | unsolved %d%n",
+            requests / (elapsed / 1e9), latencies[requests / 2] / 1e6,
+            latencies[Math.min(requests * 99 / 100, requests - 1)] / 1e6, latencies[requests - 1] / 1e6, unsolved[0]);
+    }
+
+    /**
+     * Sends every connections-th record, starting at the given one, over a
+     * connection of its own, and records the latency of each as its response
+     * comes back.
+     */
+    private static void drive (int port, List<String> records, int first, int connections, long[] latencies, int[] unsolved) {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8))) {
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            AtomicLongArray sent = new AtomicLongArray(records.size());
+            Thread writer = new Thread(() -> {
+                try {
+                    for (int i = first; i < records.size(); i += connections) {
+                        sent.set(i, System.nanoTime());
+                        out.write(records.get(i));
+                        out.write('\n');
+                        out.flush();
+                    }
+                    socket.shutdownOutput();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.start();
+            // Responses come back in the order sent, so each one answers the next record
+            for (int i = first; i < records.size(); i += connections) {
+                String line = in.readLine();
+                long received = System.nanoTime();
+                if (line == null) {
+                    throw new IOException("Connection closed with requests outstanding");
+                }
+                latencies[i] = received - sent.get(i);
+                if (!line.contains("\"solution\": \"")) {
+                    synchronized (unsolved) { unsolved[0]++; }
+                }
+            }
+            writer.join();
+        } catch (IOException | InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates a request record over the given terrain with an initial state, a
+     * key, and a goal on distinct random open tiles.
+     */
+    private static String createRecord (int id, String[] terrain, Random rng) {
+        char[][] tiles = new char[terrain.length][];
+        for (int row = 0; row < terrain.length; row++) {
+            tiles[row] = terrain[row].toCharArray();
+        }
+        for (char endpoint : new char[] {'I', 'K', 'G'}) {
+            int col, row;
+            do {
+                col = rng.nextInt(tiles[0].length);
+                row = rng.nextInt(tiles.length);
+            } while (tiles[row][col] != '.');
+            tiles[row][col] = endpoint;
+        }
+        StringBuilder record = new StringBuilder("{\"id\": ").append(id).append(", \"maze\": [");
+        for (int row = 0; row < tiles.length; row++) {
+            record.append((row == 0) ? "\"" : ", \"").append(tiles[row]).append('"');
+        }
+        return record.append("]}").toString();
+    }
+
+}
@@ -8,7 +8,11 @@ import org.junit.Test;
 import org.junit.rules.TestWatcher;
 import org.junit.rules.Timeout;
 import org.junit.runner.Description;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.Socket;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import main.pathfinder.*;
 
 /**
@@ -63,6 +67,55 @@ public class PathfinderTests {
     }
     
     
+    // =================================================
+    // Test Helpers
+    // =================================================
+    
+    // Mud lies across every route from the initial state to
+    // either key and on to the goal, so that the cheapest
+    // path (costing MUDDY_MAZE_COST) is not the shortest;
+    // shared by every engine and index that must agree on it
+    static final String[] MUDDY_MAZE = {
+        "XXXXXXXXXX",
+        "XI...M..KX",
+        "X.XX.MXX.X",
+        "X....M...X",
+        "XMXX.XXX.X",
+        "XK..M...GX",
+        "XXXXXXXXXX"
+    };
+    static final int MUDDY_MAZE_COST = 13;
+    
+    // Asserts that the given actions solve the given problem
+    // at the given (optimal) cost
+    static void assertSolves (MazeProblem prob, List<String> solution, int cost) {
+        int[] result = prob.testSolution(solution);
+        assertEquals(1, result[0]);    // Test that result is a solution
+        assertEquals(cost, result[1]); // Ensure that the solution is optimal
+    }
+    
+    // The tile that a path of actions ends on, and the cost
+    // of the tiles it enters on the way
+    static class Walk {
+        MazeState end;
+        int cost;
+    }
+    
+    // Walks the given actions from the given state by hand,
+    // asserting that none of them runs into a wall
+    static Walk walk (MazeProblem prob, MazeState from, List<String> actions) {
+        Walk walk = new Walk();
+        walk.end = new MazeState(from.col, from.row);
+        for (String action : actions) {
+            walk.end.add(new MazeState(action.equals("L") ? -1 : action.equals("R") ? 1 : 0,
+                                       action.equals("U") ? -1 : action.equals("D") ? 1 : 0));
+            assertFalse(prob.isWall(walk.end.col, walk.end.row));
+            walk.cost += prob.getCost(walk.end);
+        }
+        return walk;
+    }
+    
+    
     // =================================================
     // Unit Tests
     // =================================================
@@ -153,4 +206,405 @@ public class PathfinderTests {
         assertNull(solution); // Ensure that Pathfinder knows when there's no solution
     }
     
+    @Test
+    public void testJunctionGraph_t0() {
+        String[] maze = {
+            "XXXXXXXXX",
+            "XI..M..KX",
+            "XXX.X.X.X",
+            "XXX.XXX.X",
+            "XG.....MX",
+            "XXXXXXXXX"
+        };
+        MazeProblem prob = new MazeProblem(maze);
+        JunctionGraph graph = new JunctionGraph(prob);
+        
+        // Corridors collapse and the dead end at (5, 2) is pruned, leaving
+        // only I, K, G, and the two 3-way junctions
+        assertEquals(5, graph.size());
+        assertEquals(-1, graph.nodeAt(new MazeState(5, 2)));
+        assertSolves(prob, Pathfinder.solve(prob), 19);
+    }
+    
+    @Test
+    public void testMazeBitboard_t0() {
+        String[] maze = {
+            "XXXXXXX",
+            "XI.M..X",
+            "X.XXX.X",
+            "X...MKX",
+            "XXXXXXX",
+            "XX.GXXX",
+            "XXXXXXX"
+        };
+        MazeProblem prob = new MazeProblem(maze);
+        MazeBitboard board = new MazeBitboard(prob);
+        int[] unit = board.getUnitDistances(prob.getInitial()),
+              dist = board.getDistances(prob.getInitial());
+        
+        // K at (5, 3) is 6 moves away either way round, but costs 8 through
+        // the mud on the top row and 8 through the mud on the bottom one
+        assertEquals(6, unit[3 * 7 + 5]);
+        assertEquals(8, dist[3 * 7 + 5]);
+        assertEquals(-1, dist[5 * 7 + 3]);
+        assertFalse(board.isReachable(prob.getInitial(), prob.getGoal()));
+        assertNull(Pathfinder.solve(prob));
+    }
+    
+    @Test
+    public void testMazeComponents_t0() {
+        String[] maze = {
+            "XXXXXXXX",
+            "XI.X.K.X",
+            "X.XX.X.X",
+            "XK.X...X",
+            "XXXXXGXX",
+            "XXXXXXXX"
+        };
+        MazeProblem prob = new MazeProblem(maze);
+        
+        // The U-shaped region on the right holds a key and the goal, but the
+        // initial state is walled off with the other key
+        assertEquals(2, prob.getComponents().count());
+        assertTrue(prob.isConnected(new MazeState(5, 1), prob.getGoal()));
+        assertTrue(prob.isConnected(prob.getInitial(), new MazeState(1, 3)));
+        assertFalse(prob.isConnected(prob.getInitial(), prob.getGoal()));
+        assertFalse(prob.isConnected(prob.getInitial(), new MazeState(0, 0)));
+        assertNull(Pathfinder.solve(prob));
+    }
+    
+    @Test
+    public void testPathfinderIDAStar_t0() {
+        MazeProblem prob = new MazeProblem(MUDDY_MAZE);
+        
+        // Even a tiny transposition table must only cost time, not optimality
+        for (int tableEntries : new int[] {4, Pathfinder.DEFAULT_TABLE_ENTRIES}) {
+            assertSolves(prob, Pathfinder.solve(prob, Pathfinder.Engine.IDA_STAR, tableEntries), MUDDY_MAZE_COST);
+        }
+    }
+
+    @Test
+    public void testPathfinderFringe_t0() {
+        MazeProblem prob = new MazeProblem(MUDDY_MAZE);
+        assertSolves(prob, Pathfinder.solve(prob, Pathfinder.Engine.FRINGE, Pathfinder.DEFAULT_TABLE_ENTRIES), MUDDY_MAZE_COST);
+    }
+
+    @Test
+    public void testSearchArena_t0() {
+        MazeProblem prob = new MazeProblem(MUDDY_MAZE);
+        assertSolves(prob, Pathfinder.solve(prob, Pathfinder.Engine.OFF_HEAP), MUDDY_MAZE_COST);
+        
+        // A 3-row corridor 2^33 tiles long, with a pillar to step around and mud
+        // on the row below it, searched far past the int range of tile indices
+        long cols = 1L << 33, mid = 1L << 32;
+        LongGrid corridor = new LongGrid() {
+            public long getCols () { return cols; }
+            public long getRows () { return 3; }
+            public int getCost (long col, long row) {
+                if (col < 0 || col >= cols || row < 0 || row >= 3 || (row == 1 && col == mid + 2)) { return 0; }
+                return (row == 2 && col > mid) ? 3 : 1;
+            }
+        };
+        SearchArena arena = new SearchArena();
+        List<String> actions = new ArrayList<>();
+        assertEquals(6, Pathfinder.gridExplorer(corridor, cols + mid, new long[] {cols + mid + 4}, arena, actions));
+        assertEquals(6, actions.size());
+        assertEquals(1, Collections.frequency(actions, "U"));
+        assertTrue(arena.getReservedBytes() < (1L << 24));
+    }
+    
+    @Test
+    public void testGoalBounds_t0() {
+        MazeProblem prob = new MazeProblem(MUDDY_MAZE);
+        GoalBounds bounds = new GoalBounds(prob, 2);
+        JunctionGraph graph = bounds.getGraph();
+        
+        // Pruned arcs must never cost optimality, and every node must lie in
+        // the box of some arc leaving the initial state
+        assertSolves(prob, Pathfinder.solve(prob, bounds), MUDDY_MAZE_COST);
+        int initial = graph.nodeAt(prob.getInitial());
+        for (int node = 0; node < graph.size(); node++) {
+            boolean bounded = false;
+            for (int arc = graph.firstArc(initial); arc < graph.firstArc(initial + 1); arc++) {
+                bounded |= bounds.contains(arc, node);
+            }
+            assertTrue(node == initial || bounded);
+        }
+    }
+    
+    @Test
+    public void testRealTimeAgent_t0() {
+        MazeProblem prob = new MazeProblem(MUDDY_MAZE);
+
+        // Even a one-state lookahead must reach the goal every episode, and learn
+        // its way to an optimal path as episodes go by
+        RealTimeAgent agent = new RealTimeAgent(prob, 1, 1_000_000);
+        int[] result = null;
+        for (int episode = 0; episode < 100; episode++) {
+            result = prob.testSolution(agent.runEpisode(1000));
+            assertEquals(1, result[0]); // Test that result is a solution
+            if (result[1] == MUDDY_MAZE_COST) { break; }
+        }
+        assertEquals(MUDDY_MAZE_COST, result[1]);
+        assertNull(new RealTimeAgent(prob, 1, 1_000_000).nextAction(prob.getGoal(), true));
+    }
+
+    @Test
+    public void testRealTimeAgent_t1() {
+        // A serpentine of walls every 32 cols, which the Manhattan estimate knows
+        // nothing of, too big to look all the way through within the budget
+        int rows = 64, cols = 256;
+        String[] maze = new String[rows];
+        for (int row = 0; row < rows; row++) {
+            StringBuilder line = new StringBuilder();
+            for (int col = 0; col < cols; col++) {
+                boolean wall = row == 0 || row == rows - 1 || col == 0 || col == cols - 1 ||
+                               (col % 32 == 0 && (col % 64 == 0 ? row < rows - 2 : row > 1));
+                line.append(wall ? 'X' : '.');
+            }
+            maze[row] = line.toString();
+        }
+        maze[1] = "XIK" + maze[1].substring(3);
+        maze[rows - 2] = maze[rows - 2].substring(0, cols - 2) + "GX";
+        MazeProblem prob = new MazeProblem(maze);
+
+        // The steps keep to their budget however far they may look (looking all
+        // the way takes several times longer than allowed here, even leaving
+        // room for the scheduler), and the values they learn, even when cut
+        // short, never overestimate
+        long budgetNanos = 200_000, spentNanos = 0;
+        RealTimeAgent agent = new RealTimeAgent(prob, Integer.MAX_VALUE, budgetNanos);
+        MazeState current = prob.getInitial();
+        for (int step = 0; step < 50; step++) {
+            long started = System.nanoTime();
+            String action = agent.nextAction(current, true);
+            spentNanos += System.nanoTime() - started;
+            current = new MazeState(current.col + (action.equals("L") ? -1 : action.equals("R") ? 1 : 0),
+                                    current.row + (action.equals("U") ? -1 : action.equals("D") ? 1 : 0));
+            assertFalse(prob.isWall(current.col, current.row));
+        }
+        assertTrue(spentNanos < 50 * budgetNanos + 250_000_000);
+        int[] toGoal = new MazeBitboard(prob).getDistances(prob.getGoal());
+        for (int cell = 0; cell < rows * cols; cell++) {
+            if (toGoal[cell] < 0) { continue; }
+            assertTrue(agent.getLearnedValue(new MazeState(cell % cols, cell / cols), true) <= toGoal[cell]);
+        }
+
+        // An episode takes no more than the steps it is given, and keeps a goal
+        // reached on the last of them
+        String[] corridor = {"XXXXXX", "XI.KGX", "XXXXXX"};
+        assertNull(new RealTimeAgent(new MazeProblem(corridor), 1, 1_000_000).runEpisode(2));
+        assertEquals(3, new RealTimeAgent(new MazeProblem(corridor), 1, 1_000_000).runEpisode(3).size());
+    }
+
+    @Test
+    public void testPathfinderMultiGoal_t0() {
+        String[] maze = {
+            "XXXXXXXXX",
+            "XI..K..GX",
+            "X.XXXXX.X",
+            "XG......X",
+            "XXXXXXXXX"
+        };
+        MazeProblem prob = new MazeProblem(maze);
+        assertEquals(2, prob.getGoals().size());
+
+        // Both searches must settle on the goal that is cheapest from the key,
+        // which is not the one closest to the initial state
+        for (List<String> solution : Arrays.asList(Pathfinder.solve(prob), Pathfinder.solveMultiTarget(prob))) {
+            assertSolves(prob, solution, 6);
+        }
+    }
+
+    @Test
+    public void testPathfinderMultiKey_t0() {
+        String[] maze = {
+            "XXXXXXXXXXXX",
+            "XK.......MMX",
+            "X.XXXXXXXX.X",
+            "XI.K..M...GX",
+            "X.XXXXXXXX.X",
+            "XK.........X",
+            "XXXXXXXXXXXX"
+        };
+        MazeProblem prob = new MazeProblem(maze);
+
+        // The keys' legs run side by side, and those that cannot beat the best
+        // route so far are cut off, but every engine must still find the cheapest
+        for (Pathfinder.Engine engine : Pathfinder.Engine.values()) {
+            assertSolves(prob, Pathfinder.solve(prob, engine), 11);
+        }
+    }
+
+    @Test
+    public void testPathfinderBatch_t0() throws Exception {
+        String input = String.join("\n",
+            "{\"id\": \"a\", \"maze\": [\"XXXXXX\", \"XI.KGX\", \"XXXXXX\"]}",
+            "",
+            "{\"maze\": [\"XXXXX\", \"XIXGX\", \"XKXXX\", \"XXXXX\"], \"id\": 2}",
+            "{\"id\": \"c\", \"maze\": [\"XXX\"",
+            "{\"id\": \"d\", \"note\": {\"x\": [1, 2]}, \"maze\": [\"XXXXX\", \"XIKGX\", \"XXXXX\"]}",
+            "{\"id\": , \"maze\": [\"XXXXX\", \"XIKGX\", \"XXXXX\"]}",
+            "{\"id\": \"f\", \"maze\": [\"XXXXX\", \"XIKGX\", \"XXXXX\"]} {",
+            "{\"id\":   "
+        );
+        StringWriter output = new StringWriter();
+        new PathfinderBatch(2).run(new BufferedReader(new StringReader(input)), output);
+        String[] lines = output.toString().split("\n");
+
+        // One result per record, blank lines skipped, in input order; empty ids,
+        // text after the record, and truncated records are all malformed
+        assertEquals(7, lines.length);
+        assertEquals("{\"id\": \"a\", \"cost\": 3, \"solution\": \"RRR\"}", lines[0]);
+        assertEquals("{\"id\": 2, \"cost\": -1, \"solution\": null}", lines[1]);
+        assertTrue(lines[2].startsWith("{\"id\": \"c\", \"error\": "));
+        assertEquals("{\"id\": \"d\", \"cost\": 2, \"solution\": \"RR\"}", lines[3]);
+        assertTrue(lines[4].startsWith("{\"id\": null, \"error\": "));
+        assertTrue(lines[5].startsWith("{\"id\": \"f\", \"error\": "));
+        assertTrue(lines[6], lines[6].startsWith("{\"id\": null, \"error\": ") && lines[6].contains("unexpected end of record"));
+    }
+
+    @Test
+    public void testPathfinderService_t0() throws Exception {
+        String[][] mazes = {
+            MUDDY_MAZE,
+            {"XXXXXXXXXX", "X...KM..IX", "X.XX.MXX.X", "X....M...X", "XMXX.XXX.X", "XG..M...GX", "XXXXXXXXXX"},
+            {"XXXXXXXXXX", "XI...M...X", "X.XX.MXX.X", "X....M...X", "XMXX.XXX.X", "XK..M...GX", "XXXXXXXXXX"},
+            {"XXXXXX", "XI.KGX", "XXXXXX"}
+        };
+        List<CompletableFuture<String>> results = new ArrayList<>();
+        try (PathfinderService service = new PathfinderService(50, 2)) {
+            for (int i = 0; i < mazes.length; i++) {
+                results.add(service.submit("{\"id\": " + i + ", \"maze\": [\"" + String.join("\", \"", mazes[i]) + "\"]}"));
+            }
+
+            // The first three mazes differ only in their endpoints, so they are
+            // answered together from one set of distance fields, yet each answer
+            // must be as cheap as solving its maze alone
+            for (int i = 0; i < mazes.length; i++) {
+                MazeProblem prob = new MazeProblem(mazes[i]);
+                String line = results.get(i).get();
+                String prefix = "{\"id\": " + i + ", \"cost\": " + prob.testSolution(Pathfinder.solve(prob))[1] + ", \"solution\": \"";
+                assertTrue(line, line.startsWith(prefix));
+                List<String> solution = Arrays.asList(line.substring(prefix.length(), line.length() - 2).split(""));
+                assertEquals(1, prob.testSolution(solution)[0]);
+            }
+            assertEquals("{\"id\": 3, \"cost\": 3, \"solution\": \"RRR\"}", results.get(3).get());
+            assertEquals(2, service.getGroupCount());
+
+            // Pipelined requests over a socket come back in the order they were sent
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), service.listen(0));
+                 BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+                Writer out = new OutputStreamWriter(socket.getOutputStream());
+                out.write("{\"id\": \"x\", \"maze\": [\"XXXXXX\", \"XIK.GX\", \"XXXXXX\"]}\n");
+                out.write("{\"id\": \"y\", \"maze\": [\"XXXXXX\", \"XI.KGX\", \"XXXXXX\"]}\n");
+                out.flush();
+                socket.shutdownOutput();
+                assertEquals("{\"id\": \"x\", \"cost\": 3, \"solution\": \"RRR\"}", in.readLine());
+                assertEquals("{\"id\": \"y\", \"cost\": 3, \"solution\": \"RRR\"}", in.readLine());
+                assertNull(in.readLine());
+            }
+        }
+    }
+
+    @Test
+    public void testPathfinderService_t1() throws Exception {
+        String record = "{\"id\": \"a\", \"maze\": [\"XXXXXX\", \"XI.KGX\", \"XXXXXX\"]}";
+        PathfinderService service = new PathfinderService(50, 1);
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), service.listen(0));
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()))) {
+            Writer out = new OutputStreamWriter(socket.getOutputStream());
+            out.write(record + "\n");
+            out.flush();
+            String answer = "{\"id\": \"a\", \"cost\": 3, \"solution\": \"RRR\"}";
+            assertEquals(answer, in.readLine());
+            CompletableFuture<String> open = service.submit(record);
+            service.close();
+
+            // A request accepted before the close is still answered, but the
+            // idle connection is closed, and later requests are refused at once
+            assertEquals(answer, open.get());
+            assertNull(in.readLine());
+            for (int i = 0; i < 2; i++) {
+                assertTrue(service.submit(record).get().startsWith("{\"id\": \"a\", \"error\": "));
+            }
+        }
+    }
+
+    @Test
+    public void testContractionHierarchy_t0() {
+        MazeProblem prob = new MazeProblem(MUDDY_MAZE);
+        ContractionHierarchy ch = new ContractionHierarchy(prob);
+        MazeState from = new MazeState(1, 5), to = new MazeState(8, 1);
+        List<String> path = ch.query(from, to);
+        
+        // Walk the unpacked path by hand to check that it is legal and cheapest
+        Walk walk = walk(prob, from, path);
+        assertEquals(to, walk.end);
+        assertEquals(ch.getDistance(from, to), walk.cost);
+        assertEquals(new MazeBitboard(prob).getDistances(from)[1 * 10 + 8], walk.cost);
+        assertNull(ch.query(from, new MazeState(0, 0)));
+    }
+
+    @Test
+    public void testSubgoalGraph_t0() {
+        String[] maze = {
+            "XXXXXXX",
+            "XI.M.KX",
+            "X..X..X",
+            "X.....X",
+            "XXXXXXX"
+        };
+        MazeProblem prob = new MazeProblem(maze);
+        SubgoalGraph sg = new SubgoalGraph(prob);
+        MazeState from = new MazeState(1, 2), to = new MazeState(5, 2);
+        List<String> path = sg.query(from, to);
+        
+        // Only the 4 tiles diagonal to the pillar are subgoals, and the cheapest
+        // way round it is below, away from the mud
+        assertEquals(4, sg.getSubgoalCount());
+        Walk walk = walk(prob, from, path);
+        assertEquals(to, walk.end);
+        assertEquals(6, walk.cost);
+        assertEquals(6, sg.getDistance(from, to));
+        assertNull(sg.query(from, new MazeState(0, 0)));
+    }
+    
+    @Test
+    public void testCompressedPathDatabase_t0() {
+        MazeProblem prob = new MazeProblem(MUDDY_MAZE);
+        MazeBitboard board = new MazeBitboard(prob);
+        
+        // Every pair of open tiles, in each target order, with and without ties
+        // between first moves; exploiting ties and numbering depth-first each
+        // take fewer runs
+        int[][] runCounts = new int[2][2];
+        for (CompressedPathDatabase.Ordering ordering : CompressedPathDatabase.Ordering.values()) {
+            for (boolean exploitTies : new boolean[] {false, true}) {
+                CompressedPathDatabase cpd = new CompressedPathDatabase(prob, 2, exploitTies, ordering);
+                runCounts[ordering.ordinal()][exploitTies ? 1 : 0] = cpd.getRunCount();
+                for (int fromCell = 0; fromCell < 70; fromCell++) {
+                    MazeState from = new MazeState(fromCell % 10, fromCell / 10);
+                    if (prob.isWall(from.col, from.row)) { continue; }
+                    int[] distances = board.getDistances(from);
+                    for (int toCell = 0; toCell < 70; toCell++) {
+                        MazeState to = new MazeState(toCell % 10, toCell / 10);
+                        if (prob.isWall(to.col, to.row)) { continue; }
+                        Walk walk = walk(prob, from, cpd.query(from, to));
+                        assertEquals(to, walk.end);
+                        assertEquals(distances[toCell], walk.cost);
+                    }
+                }
+                assertNull(cpd.nextMove(prob.getInitial(), prob.getInitial()));
+            }
+        }
+        for (int[] counts : runCounts) {
+            assertTrue(counts[1] < counts[0]);
+        }
+        for (int ties = 0; ties < 2; ties++) {
+            assertTrue(runCounts[CompressedPathDatabase.Ordering.DEPTH_FIRST.ordinal()][ties]
+                     < runCounts[CompressedPathDatabase.Ordering.ROW_MAJOR.ordinal()][ties]);
+        }
+    }
+    
 }
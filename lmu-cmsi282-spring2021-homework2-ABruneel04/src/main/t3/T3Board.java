@@ -0,0 +1,318 @@
+package main.t3;
+
+import java.util.SplittableRandom;
+
+/**
+ * Mutable T3 board for searching in place: moves are made and unmade on a
+ * single packed board (laid out as in {@link T3State}) instead of creating a
+ * new state for every child, and are generated into a buffer that the caller
+ * owns. Along with the board, it keeps the board's Zobrist key as seen through
+ * each of the board's 8 symmetries, updated with every move made or unmade.
+ * <p>
+ * The board also keeps the sum of each of its 8 lines (rows, cols, and
+ * diagonals), packed 5 bits apiece into a long, and its number of empty cells,
+ * each updated with every move made or unmade, so that checking for a win is
+ * one test over all 8 sums at once and checking for a tie one comparison.
+ * <p>
+ * Moves are ints packing the cell (row * 3 + col) above the number placed, so
+ * that ordering moves as ints orders them by cell and then number; see
+ * {@link #moveOf(int, int, int)}.
+ */
+public class T3Board {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    /**
+     * The most moves that can be generated from any board, and so the smallest
+     * buffer that {@link #generateMoves(int[])} may be given.
+     */
+    public static final int MAX_MOVES = 27;
+    private static final int NUMBER_BITS = 3;
+    private static final int[] ODD_NUMBERS = {1, 3, 5}, EVEN_NUMBERS = {2, 4, 6};
+    // Cells in the order that T3Player breaks ties in: by col, then by row
+    private static final int[] TIE_BREAK_CELLS = {0, 3, 6, 1, 4, 7, 2, 5, 8};
+
+    // Line sums are at most 3 * 6 = 18, so each fits in a 5-bit field;
+    // LINE_UNITS[cell] has a 1 in the field of every line through the cell, so
+    // that adding number * LINE_UNITS[cell] adds the number to each of their sums
+    private static final int LINE_BITS = 5, LINE_COUNT = 8, WIN_TARGET = 13;
+    private static final int[][] LINES = {
+        {0, 3, 6}, {1, 4, 7}, {2, 5, 8}, // cols
+        {0, 4, 8}, {2, 4, 6},            // diags
+        {0, 1, 2}, {3, 4, 5}, {6, 7, 8}  // rows
+    };
+    private static final long[] LINE_UNITS = new long[9];
+    // A 1 in the lowest and highest bit of every field, and the WIN_TARGET in every field
+    private static final long FIELD_LOWS, FIELD_HIGHS, WIN_SUMS;
+    static {
+        long lows = 0;
+        for (int line = 0; line < LINE_COUNT; line++) {
+            for (int cell : LINES[line]) {
+                LINE_UNITS[cell] |= 1L << (LINE_BITS * line);
+            }
+            lows |= 1L << (LINE_BITS * line);
+        }
+        FIELD_LOWS = lows;
+        FIELD_HIGHS = lows << (LINE_BITS - 1);
+        WIN_SUMS = lows * WIN_TARGET;
+    }
+
+    // Random keys for every number in every cell, plus one for the odd player's
+    // turn; a board's Zobrist key is the XOR of the keys of everything on it.
+    // ZOBRIST_CELLS[s] holds the keys as seen through symmetry s, so that XORing
+    // them gives the key of the board that the symmetry carries this one to
+    private static final long[][][] ZOBRIST_CELLS = new long[T3State.SYMMETRY_COUNT][9][7];
+    private static final long ZOBRIST_TURN;
+    static {
+        SplittableRandom rng = new SplittableRandom(282);
+        for (long[] cell : ZOBRIST_CELLS[0]) {
+            for (int number = 1; number < cell.length; number++) {
+                cell[number] = rng.nextLong();
+            }
+        }
+        ZOBRIST_TURN = rng.nextLong();
+        for (int s = 1; s < T3State.SYMMETRY_COUNT; s++) {
+            for (int cell = 0; cell < 9; cell++) {
+                ZOBRIST_CELLS[s][cell] = ZOBRIST_CELLS[0][T3State.SYMMETRIES[s][cell]];
+            }
+        }
+    }
+
+    // Fields
+    // -----------------------------------------------------------------------------
+    private long board;
+    private final long[] keys = new long[T3State.SYMMETRY_COUNT];
+    private long lineSums;
+    private int emptyCount;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Constructs a board holding the given state
+     * @param state The state to start from
+     */
+    public T3Board (T3State state) {
+        reset(state);
+    }
+
+    /**
+     * Constructs a copy of the given board
+     * @param other The board to copy
+     */
+    public T3Board (T3Board other) {
+        reset(other);
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Replaces this board with the given state
+     * @param state The state to hold
+     */
+    public void reset (T3State state) {
+        board = state.getBoard();
+        lineSums = 0;
+        emptyCount = 0;
+        for (int cell = 0; cell < 9; cell++) {
+            int number = (int) (board >>> (T3State.CELL_BITS * cell) & T3State.CELL_MASK);
+            lineSums += number * LINE_UNITS[cell];
+            if (number == 0) { emptyCount++; }
+        }
+        for (int s = 0; s < keys.length; s++) {
+            keys[s] = state.isOddTurn() ? ZOBRIST_TURN : 0;
+            for (int cell = 0; cell < 9; cell++) {
+                keys[s] ^= ZOBRIST_CELLS[s][cell][(int) (board >>> (T3State.CELL_BITS * cell) & T3State.CELL_MASK)];
+            }
+        }
+    }
+
+    /**
+     * Replaces this board with a copy of the given one
+     * @param other The board to copy
+     */
+    public void reset (T3Board other) {
+        board = other.board;
+        System.arraycopy(other.keys, 0, keys, 0, keys.length);
+        lineSums = other.lineSums;
+        emptyCount = other.emptyCount;
+    }
+
+    /**
+     * Places a number and passes the turn. The move is assumed to be legal.
+     * @param move A move generated from this board
+     */
+    public void make (int move) {
+        int cell = move >>> NUMBER_BITS, number = move & 7;
+        board = (board | (long) number << (T3State.CELL_BITS * cell)) ^ T3State.TURN_BIT;
+        lineSums += number * LINE_UNITS[cell];
+        emptyCount--;
+        toggleKeys(cell, number);
+    }
+
+    /**
+     * Takes back a number and the turn; the exact reverse of {@link #make(int)}.
+     * @param move The move last made on this board
+     */
+    public void unmake (int move) {
+        int cell = move >>> NUMBER_BITS, number = move & 7;
+        board = (board & ~(T3State.CELL_MASK << (T3State.CELL_BITS * cell))) ^ T3State.TURN_BIT;
+        lineSums -= number * LINE_UNITS[cell];
+        emptyCount++;
+        toggleKeys(cell, number);
+    }
+
+    /**
+     * Writes every legal move from this board into the given buffer, ordered by
+     * col, then row, then number, i.e., the order in which T3Player breaks ties.
+     * @param moves A buffer of at least MAX_MOVES ints
+     * @return The number of moves written
+     */
+    public int generateMoves (int[] moves) {
+        int[] numbers = isOddTurn() ? ODD_NUMBERS : EVEN_NUMBERS;
+        int count = 0;
+        for (int cell : TIE_BREAK_CELLS) {
+            if ((board & T3State.CELL_MASK << (T3State.CELL_BITS * cell)) != 0) { continue; }
+            for (int number : numbers) {
+                moves[count++] = cell << NUMBER_BITS | number;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Tests every line sum against the WIN_TARGET at once: XORing the sums with
+     * WIN_SUMS leaves a field of 0 exactly where a line wins, and subtracting 1
+     * from each field borrows into its high bit only if it was 0 (or already
+     * had its high bit set, which the mask with ~diff rules out). A borrow out
+     * of one field only ever follows a 0 field below it, so it cannot make a
+     * board without a win look like one.
+     * @return true if the last move made won, false otherwise
+     */
+    public boolean isWin () {
+        return isWin(lineSums);
+    }
+
+    /**
+     * @param move A move generated from this board
+     * @return true if making the move would win, false otherwise
+     */
+    public boolean isWinningMove (int move) {
+        return isWin(lineSums + (move & 7) * LINE_UNITS[move >>> NUMBER_BITS]);
+    }
+
+    /**
+     * Finds the cells in which the player who just moved could win, were it
+     * their turn again, i.e., the cells the player to move must fill to block them.
+     * @return A mask with bit (row * 3 + col) set for every such cell
+     */
+    int getThreatCells () {
+        int[] numbers = isOddTurn() ? EVEN_NUMBERS : ODD_NUMBERS;
+        int threats = 0;
+        for (int cell = 0; cell < 9; cell++) {
+            if ((board & T3State.CELL_MASK << (T3State.CELL_BITS * cell)) != 0) { continue; }
+            for (int number : numbers) {
+                if (isWin(lineSums + number * LINE_UNITS[cell])) {
+                    threats |= 1 << cell;
+                    break;
+                }
+            }
+        }
+        return threats;
+    }
+
+    /**
+     * @return true if every cell is filled and the last move did not win
+     */
+    public boolean isTie () {
+        return emptyCount == 0 && !isWin();
+    }
+
+    public boolean isOddTurn () {
+        return (board & T3State.TURN_BIT) != 0;
+    }
+
+    /**
+     * @return The state that this board holds
+     */
+    public T3State toState () {
+        return new T3State(board);
+    }
+
+    /**
+     * @return The packed board
+     */
+    long getBoard () {
+        return board;
+    }
+
+    /**
+     * @return The number of empty cells on the board
+     */
+    int getEmptyCount () {
+        return emptyCount;
+    }
+
+    /**
+     * @param s The index of a symmetry, into T3State.SYMMETRIES
+     * @return The Zobrist key of the board that the symmetry carries this one to
+     */
+    long getKey (int s) {
+        return keys[s];
+    }
+
+    /**
+     * Returns the symmetry with the least key. Every board symmetric to this one
+     * has the same 8 keys, so the least of them keys all such boards alike.
+     * @return The index of the symmetry with the least key, the first if several are equal
+     */
+    int getCanonicalSymmetry () {
+        int least = 0;
+        for (int s = 1; s < keys.length; s++) {
+            if (keys[s] < keys[least]) { least = s; }
+        }
+        return least;
+    }
+
+    private static boolean isWin (long lineSums) {
+        long diff = lineSums ^ WIN_SUMS;
+        return ((diff - FIELD_LOWS) & ~diff & FIELD_HIGHS) != 0;
+    }
+
+    private void toggleKeys (int cell, int number) {
+        for (int s = 0; s < keys.length; s++) {
+            keys[s] ^= ZOBRIST_CELLS[s][cell][number] ^ ZOBRIST_TURN;
+        }
+    }
+
+    /**
+     * @param col 0-index column to place a number within
+     * @param row 0-index row to place a number within
+     * @param number Number to place in the cell
+     * @return The move placing the number
+     */
+    public static int moveOf (int col, int row, int number) {
+        return (row * 3 + col) << NUMBER_BITS | number;
+    }
+
+    /**
+     * @param move A move
+     * @return The position of the move in the order that T3Player breaks ties
+     * in, by col, then row, then number
+     */
+    static int tieBreakOrderOf (int move) {
+        int cell = move >>> NUMBER_BITS;
+        return ((cell % 3) * 3 + cell / 3) << NUMBER_BITS | (move & 7);
+    }
+
+    /**
+     * @param move A move
+     * @return The T3Action making the move
+     */
+    public static T3Action toAction (int move) {
+        int cell = move >>> NUMBER_BITS;
+        return new T3Action(cell % 3, cell / 3, move & 7);
+    }
+
+}
@@ -0,0 +1,59 @@
+package main.t3;
+
+/**
+ * Heuristic score of a {@link T3VariantBoard} that is not over, for boards at
+ * which a {@link T3VariantPlayer} runs out of depth: positive if the position
+ * favors the player to move, negative if it favors the other. Scores must lie
+ * strictly between -MAX_SCORE and MAX_SCORE, below every won or lost game.
+ */
+@FunctionalInterface
+public interface T3Evaluator {
+
+    /**
+     * The bound, exclusive, on the magnitude of every score.
+     */
+    int MAX_SCORE = 1 << 16;
+
+    /**
+     * Scores each line that one more number would fill: a line the player to
+     * move can win on is worth most, since they will win next turn, and two or
+     * more the other player can win on nearly as much against them, since only
+     * one can be blocked. A single such threat counts against the player to
+     * move, who must spend their turn blocking it. Each other line that can
+     * still reach the target (the target is at least as far from its sum as it
+     * has empty cells, and no further than the greatest number times that many)
+     * counts for whoever would fill its last cell were the players to take
+     * turns filling only it: the player to move if it has an odd number empty.
+     */
+    T3Evaluator THREATS = board -> {
+        T3Variant variant = board.getVariant();
+        int size = variant.getSize(), target = variant.getWinTarget(), maxMove = variant.getMaxMove();
+        boolean odd = board.isOddTurn();
+        int wins = 0, threats = 0, parity = 0;
+        for (int line = 0; line < variant.getLineCount(); line++) {
+            int empty = size - board.getLineFilled(line), need = target - board.getLineSum(line);
+            if (empty == 1) {
+                if (variant.isMoveOf(odd, need)) { wins++; }
+                else if (variant.isMoveOf(!odd, need)) { threats++; }
+            }
+            else if (empty > 1 && need >= empty && need <= empty * maxMove) {
+                parity += (empty % 2 == 1) ? 1 : -1;
+            }
+        }
+        if (wins > 0) { return MAX_SCORE - 1; }
+        if (threats > 1) { return -(MAX_SCORE - 1); }
+        return 16 * parity - 64 * threats;
+    };
+
+    /**
+     * Scores every board 0, leaving all of the work to the search.
+     */
+    T3Evaluator NONE = board -> 0;
+
+    /**
+     * @param board A board that is not over
+     * @return The score of the board for the player to move
+     */
+    int evaluate (T3VariantBoard board);
+
+}
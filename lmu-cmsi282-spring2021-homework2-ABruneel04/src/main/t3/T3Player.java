@@ -2,19 +2,135 @@
 
 package main.t3;
 
-import java.util.*;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 /**
  * Artificial Intelligence responsible for playing the game of T3!
- * Implements the alpha-beta-pruning mini-max search algorithm
+ * Implements the alpha-beta-pruning mini-max search algorithm, with a
+ * transposition table so that a board reached by several move orders, or
+ * any rotation or reflection of it, is only searched once, and move ordering
+ * so that the moves likeliest to cut the search off are tried first. Given a
+ * ForkJoinPool, it searches the top of the tree in parallel, with every
+ * thread sharing the one table.
+ * A T3Player is safe to share between threads: any number of games may call
+ * {@link #choose(T3State)} on one at once, each searching with scratch space
+ * of its own while all of them share its table.
  */
 public class T3Player {
 	
 	// Private Constants
 	// -------------------------------
-	private int a = Integer.MIN_VALUE;
-	private int b = Integer.MAX_VALUE;
-    
+	private static final int A = Integer.MIN_VALUE;
+	private static final int B = Integer.MAX_VALUE;
+	
+	// Transposition Table Constants
+	// -------------------------------
+	private static final int DEFAULT_TABLE_ENTRIES = 1 << 18;
+	private static final int EXACT = 1, LOWER = 2, UPPER = 3;
+	// Entries pack the score (plus 1), bound, best move, number of empty cells
+	// (the size of the subtree searched), and the search they came from into a long
+	private static final int BOUND_SHIFT = 2, MOVE_SHIFT = 4, DEPTH_SHIFT = 11, GENERATION_SHIFT = 16;
+	private static final int NO_MOVE = 0x7F;
+	// Moves are generated into one buffer per ply, since no search is deeper than 9
+	private static final int MAX_PLY = 10;
+	
+	// Move Ordering Constants
+	// -------------------------------
+	// Moves are sorted by key: the table's best move first, then any move that
+	// blocks the opponent from winning next turn, then the rest by history, i.e.,
+	// by how often (weighted by subtree size) they have cut the search off before
+	private static final int TABLE_MOVE_KEY = Integer.MAX_VALUE, BLOCK_KEY = 1 << 30;
+	private static final int HISTORY_SIZE = 9 * 8;
+	
+	// Parallel Search Constants
+	// -------------------------------
+	// Boards this close to the root have their younger moves searched in parallel
+	private static final int SPLIT_PLIES = 2;
+	
+	// Private Fields
+	// -------------------------------
+	// The table is shared by every thread of a parallel search without locks:
+	// each slot's key is stored XORed with its entry, so a slot torn by two
+	// threads storing at once fails to match either key rather than mixing them
+	private final AtomicLongArray tableKeys, tableEntries;
+	private final int tableMask;
+	private final AtomicInteger generation = new AtomicInteger();
+	private final T3Tablebase tablebase;
+	private final boolean orderMoves;
+	private final ForkJoinPool pool;
+	private volatile long nodeCount;
+	// Searchers not in use by any search, whole choices and the subtrees split
+	// off of them alike, so that no two searches ever share one and the number
+	// made is only ever the most searches running at once
+	private final ConcurrentLinkedDeque<Searcher> idleSearchers = new ConcurrentLinkedDeque<>();
+	
+	/**
+	 * Constructs a T3Player with a transposition table of the default size
+	 */
+	public T3Player () {
+		this(DEFAULT_TABLE_ENTRIES);
+	}
+	
+	/**
+	 * Constructs a T3Player that looks its choices up in the given tablebase,
+	 * searching only for boards that it does not hold
+	 * 
+	 * @param tablebase The tablebase to look choices up in
+	 */
+	public T3Player (T3Tablebase tablebase) {
+		this(DEFAULT_TABLE_ENTRIES, tablebase, true, null);
+	}
+	
+	/**
+	 * Constructs a T3Player with a transposition table of the given size, which
+	 * it keeps from one choice to the next
+	 * 
+	 * @param tableEntries The number of entries in the table, a power of 2
+	 */
+	public T3Player (int tableEntries) {
+		this(tableEntries, null, true, null);
+	}
+	
+	/**
+	 * Constructs a T3Player with a transposition table of the given size that
+	 * may search moves in plain tie-break order instead, e.g., to measure what
+	 * move ordering saves
+	 * 
+	 * @param tableEntries The number of entries in the table, a power of 2
+	 * @param orderMoves Whether to order moves by wins, blocks, and history
+	 */
+	public T3Player (int tableEntries, boolean orderMoves) {
+		this(tableEntries, null, orderMoves, null);
+	}
+	
+	/**
+	 * Constructs a T3Player with a transposition table of the given size that
+	 * searches in parallel on the given pool, making the same choices that it
+	 * would alone
+	 * 
+	 * @param tableEntries The number of entries in the table, a power of 2
+	 * @param pool The pool to search on, or null to search on the calling thread
+	 */
+	public T3Player (int tableEntries, ForkJoinPool pool) {
+		this(tableEntries, null, true, pool);
+	}
+	
+	private T3Player (int tableEntries, T3Tablebase tablebase, boolean orderMoves, ForkJoinPool pool) {
+		if(tableEntries < 1 || Integer.bitCount(tableEntries) != 1) {
+			throw new IllegalArgumentException("Table size " + tableEntries + " is not a power of 2");
+		}
+		this.tableKeys = new AtomicLongArray(tableEntries);
+		this.tableEntries = new AtomicLongArray(tableEntries);
+		this.tableMask = tableEntries - 1;
+		this.tablebase = tablebase;
+		this.orderMoves = orderMoves;
+		this.pool = pool;
+	}
+	
     /**
      * Workhorse of an AI T3Player's choice mechanics that, given a game state,
      * makes the optimal choice from that state as defined by the mechanics of
@@ -27,107 +143,407 @@ public class T3Player {
      * @return The T3Player's optimal action.
      */
     public T3Action choose (T3State state) {
-    	T3Action choice = new T3Action(0, 0, 0);
-    	choice = alphaBetaPrune(state, a, b, true).action;
-    	return choice;
+    	T3Action choice = (tablebase == null) ? null : tablebase.getBestAction(state);
+    	if(choice != null) {
+    		return choice;
+    	}
+    	Searcher searcher = idleSearchers.poll();
+    	if(searcher == null) {
+    		searcher = new Searcher(new T3Board(state));
+    	}
+    	searcher.reset(state, generation.incrementAndGet());
+    	try {
+    		if(pool == null) {
+    			searcher.alphaBetaPrune(A, B, true, 0);
+    		}
+    		else {
+    			searcher.task.setWindow(A, B, true, 0);
+    			pool.invoke(searcher.task);
+    		}
+    		nodeCount = searcher.nodes;
+    		return (searcher.bestMove == NO_MOVE) ? null : T3Board.toAction(searcher.bestMove);
+    	}
+    	finally {
+    		idleSearchers.push(searcher);
+    	}
     }
     
     /**
-     * Recursively utilizes alpha-beta pruning in order to return an optimal action as well as a minimax
-     * score when given a state and told if the computer will be playing evens or odds
-     * @param state The state of the T3 board before the method is called
-     * @param a The minimum integer value we use for a-b pruning
-     * @param b The maximum integer value we use for a-b pruning
-     * @param isMaxPlayer The boolean value designed to determine which player's turn it is for calculations
-     * @return The action that led to the optimal board state as well as the utility score
+     * @return The number of boards searched by the choice that finished last,
+     * 0 if it was looked up in the tablebase
      */
-    private T3ActionScore alphaBetaPrune(T3State state, int a, int b, boolean isMaxPlayer) {
-    	Map<T3Action, T3State> children = state.getTransitions();
-		T3ActionScore actionScore = new T3ActionScore(null, 0);
-    	if(state.isWin()) {    		
-    		if(isMaxPlayer) {
-    			actionScore.action = null;
-    			actionScore.miniMaxScore = -1;
-    			return actionScore;
-    		}
-    		else {
-    			actionScore.action = null;
-    			actionScore.miniMaxScore = 1;
-    			return actionScore;
+    public long getNodeCount () {
+    	return nodeCount;
+    }
+    
+    /**
+     * @param key The Zobrist key of a T3 board
+     * @return The table's entry for the board, or 0 if it holds none
+     */
+    private long probe(long key) {
+    	int slot = (int) key & tableMask;
+    	long entry = tableEntries.get(slot);
+    	return ((tableKeys.get(slot) ^ entry) == key) ? entry : 0;
+    }
+    
+    /**
+     * Records the result of searching a board in its slot of the table. An entry
+     * left by an earlier choice is always replaced; one from this choice only if
+     * the new board has at least as many empty cells, i.e., was the costlier search.
+     * Entries from choices made at once by other threads count as earlier.
+     * @param key The Zobrist key of the board
+     * @param score The board's score for the player to move
+     * @param bound Whether the score is EXACT, or a LOWER or UPPER bound
+     * @param best The best move found from the board, or NO_MOVE if there is none
+     * @param symmetry The symmetry through which the table sees the board
+     * @param depth The number of empty cells on the board
+     * @param choice The number of the choice the search belongs to
+     */
+    private void store(long key, int score, int bound, int best, int symmetry, int depth, int choice) {
+    	int slot = (int) key & tableMask,
+    	    move = (best == NO_MOVE) ? NO_MOVE : T3State.SYMMETRIES[symmetry][best / 8] * 8 + best % 8;
+    	long old = tableEntries.get(slot);
+    	if(old != 0 && (tableKeys.get(slot) ^ old) != key && (int) (old >>> GENERATION_SHIFT) == choice &&
+    	   ((int) (old >>> DEPTH_SHIFT) & 0xF) > depth) {
+    		return;
+    	}
+    	long entry = (score + 1) | (long) bound << BOUND_SHIFT | (long) move << MOVE_SHIFT |
+    	             (long) depth << DEPTH_SHIFT | (long) choice << GENERATION_SHIFT;
+    	tableEntries.set(slot, entry);
+    	tableKeys.set(slot, key ^ entry);
+    }
+    
+    /**
+     * Searcher private nested class that holds one thread's search: the board it
+     * makes and unmakes moves on, its buffers, and its move history, which are
+     * reused by every search made with it so that a search allocates nothing
+     * beyond its result. A parallel search hands each subtree it splits off to an
+     * idle Searcher, which copies the board it splits from and shares the history
+     * of the one it split from; their threads may race on it, which only ever
+     * costs ordering. Each Searcher holds the fork/join task that runs it on the
+     * pool, searching the window last given to
+     * {@link Task#setWindow(int, int, boolean, int)}.
+     */
+    private class Searcher {
+    	
+    	// Private Fields
+    	// ----------------------
+    	private final T3Board board;
+    	private final int[][] moveBuffers = new int[MAX_PLY][T3Board.MAX_MOVES],
+    	                      orderKeys = new int[MAX_PLY][T3Board.MAX_MOVES],
+    	                      splitScores = new int[SPLIT_PLIES][];
+    	private final Searcher[][] splitChildren = new Searcher[SPLIT_PLIES][];
+    	private final long[] rootSeen = new long[T3Board.MAX_MOVES];
+    	private final int[] ownHistory = new int[HISTORY_SIZE];
+    	private int[] history = ownHistory;
+    	private int choice, bestMove;
+    	private long nodes;
+    	private final Task task = new Task();
+    	
+    	/**
+    	 * Constructs a Searcher that searches on the given board
+    	 *
+    	 * @param board The board to search on, which the Searcher takes over
+    	 */
+    	private Searcher(T3Board board) {
+    		this.board = board;
+    		this.bestMove = NO_MOVE;
+    	}
+    	
+    	/**
+    	 * Readies the Searcher for a new choice from the given state, ordering
+    	 * moves by its own history. History from earlier choices still counts,
+    	 * but less than the new one's.
+    	 *
+    	 * @param state The state to search from
+    	 * @param choice The number of the choice
+    	 */
+    	private void reset(T3State state, int choice) {
+    		board.reset(state);
+    		history = ownHistory;
+    		for(int i = 0; i < HISTORY_SIZE; i++) {
+    			history[i] >>= 1;
     		}
+    		this.choice = choice;
+    		bestMove = NO_MOVE;
+    		nodes = 0;
     	}
-    	else if(state.isTie()) {
-			actionScore.action = null;
-			actionScore.miniMaxScore = 0;
-			return actionScore;
+    	
+    	/**
+    	 * Readies the Searcher to search a subtree split off of another search: the
+    	 * board after the given move from the other's board, ordering moves by the
+    	 * other's history
+    	 *
+    	 * @param parent The search that the subtree is split off of
+    	 * @param move The move from the parent's board that leads into the subtree
+    	 */
+    	private void reset(Searcher parent, int move) {
+    		board.reset(parent.board);
+    		board.make(move);
+    		history = parent.history;
+    		choice = parent.choice;
+    		bestMove = NO_MOVE;
+    		nodes = 0;
     	}
     	
-    	if(isMaxPlayer) {
-    		int v = Integer.MIN_VALUE;
-    		for(Map.Entry<T3Action, T3State> child : children.entrySet()) {
-    			T3ActionScore childActionScore = alphaBetaPrune(child.getValue(), a, b, false);
-    			if(v < childActionScore.miniMaxScore) {
-    				v = childActionScore.miniMaxScore;
-    				actionScore.action = child.getKey();
+    	/**
+    	 * Recursively utilizes alpha-beta pruning in order to return the minimax
+    	 * score of the search board when told if the computer will be playing evens
+    	 * or odds; each move is made on the board, searched, and unmade again, and
+    	 * the best move from the root is left in bestMove.
+    	 * Boards other than the root are first looked up in the transposition table,
+    	 * whose score ends the search if it is exact or falls outside of a-b, and
+    	 * whose best move is otherwise searched first. Any immediately winning move
+    	 * ends the search at once, since nothing can score better. The rest are
+    	 * searched blocks first and then by history, so the tie-break order only
+    	 * decides between moves at the root: a move that comes before the best one
+    	 * found so far is searched with a window just wide enough to tell whether it
+    	 * ties it. The root also skips any move leading to a board symmetric to that
+    	 * of an earlier move: the two share a score, so the earlier one is chosen
+    	 * over it either way.
+    	 * On a pool, boards within SPLIT_PLIES of the root search their first move
+    	 * alone and, unless it cuts the search off, the rest in parallel (Young
+    	 * Brothers Wait). The parallel moves all share the window left by the
+    	 * first, which at the root is lowered by one so that every move that could
+    	 * tie the best gets an exact score, and the best is then picked from them
+    	 * in order just as above, so the choice never depends on timing.
+    	 * @param a The minimum integer value we use for a-b pruning
+    	 * @param b The maximum integer value we use for a-b pruning
+    	 * @param isMaxPlayer The boolean value designed to determine which player's turn it is for calculations
+    	 * @param ply The number of moves made on the board since the root, 0 at the root
+    	 * @return The utility score of the board
+    	 */
+    	private int alphaBetaPrune(int a, int b, boolean isMaxPlayer, int ply) {
+    		nodes++;
+    		if(board.isWin()) {
+    			return isMaxPlayer ? -1 : 1;
+    		}
+    		else if(board.isTie()) {
+    			return 0;
+    		}
+    	
+    		//the table is keyed by the least of the symmetric keys, which every board
+    		//symmetric to this one shares, and moves in it are seen through the
+    		//symmetry that gives that key; scores are kept from the view of the
+    		//player to move, so that they hold whichever side the search was started for
+    		int symmetry = board.getCanonicalSymmetry();
+    		long key = board.getKey(symmetry);
+    		int tableMove = NO_MOVE;
+    		long entry = (ply == 0) ? 0 : probe(key);
+    		if(entry != 0) {
+    			int score = (int) (entry & 3) - 1, bound = (int) (entry >>> BOUND_SHIFT) & 3;
+    			if(!isMaxPlayer) {
+    				score = -score;
+    				bound = (bound == EXACT) ? EXACT : LOWER + UPPER - bound;
     			}
-    			a = Math.max(a, v);
-    			actionScore.miniMaxScore = v;
-    			if(child.getValue().isWin()) {
-    				actionScore.action = child.getKey();
-    				return actionScore;
+    			if(bound == EXACT || (bound == LOWER && score >= b) || (bound == UPPER && score <= a)) {
+    				return score;
     			}
-    			if(b <= a) {
-    				break;
+    			int move = (int) (entry >>> MOVE_SHIFT) & NO_MOVE;
+    			if(move != NO_MOVE) {
+    				tableMove = T3State.INVERSES[symmetry][move / 8] * 8 + move % 8;
     			}
     		}
-
-        	return actionScore;
-    	}
-
+    		int[] moves = moveBuffers[ply];
+    		int count = board.generateMoves(moves);
+    		if(ply == 0) {
+    			count = removeSymmetricMoves(moves, count);
+    		}
+    	
+    		//moves are generated in tie-break order, so the first winning move is
+    		//the one the root must take; the root always looks, as it always takes one
+    		if(orderMoves || ply == 0) {
+    			for(int i = 0; i < count; i++) {
+    				if(board.isWinningMove(moves[i])) {
+    					if(ply == 0) {
+    						bestMove = moves[i];
+    					}
+    					store(key, 1, EXACT, moves[i], symmetry, board.getEmptyCount(), choice);
+    					return isMaxPlayer ? 1 : -1;
+    				}
+    			}
+    		}
+    		sortMoves(moves, count, tableMove, ply);
+    		int a0 = a, b0 = b, best = NO_MOVE, v = isMaxPlayer ? Integer.MIN_VALUE : Integer.MAX_VALUE;
+    		boolean split = pool != null && ply < SPLIT_PLIES && count > 2;
     	
-    	else {
-    		int v = Integer.MAX_VALUE;
-    		for(Map.Entry<T3Action, T3State> child : children.entrySet()) {
-    			T3ActionScore childActionScore = alphaBetaPrune(child.getValue(), a, b, true);
-    			if(v > childActionScore.miniMaxScore) {
-    				v = childActionScore.miniMaxScore;
-    				actionScore.action = child.getKey();
+    		for(int i = 0; i < count; i++) {
+    			int move = moves[i], childScore;
+    			boolean isEarlier = ply == 0 && best != NO_MOVE &&
+    			                    T3Board.tieBreakOrderOf(move) < T3Board.tieBreakOrderOf(best);
+    			if(split && i > 0) {
+    				if(i == 1) {
+    					searchInParallel(moves, count, (ply == 0) ? v - 1 : a, b, !isMaxPlayer, ply);
+    				}
+    				childScore = splitScores[ply][i];
+    			}
+    			else {
+    				board.make(move);
+    				childScore = alphaBetaPrune(isEarlier ? v - 1 : a, b, !isMaxPlayer, ply + 1);
+    				board.unmake(move);
     			}
-    			b = Math.min(b, v);
-    			actionScore.miniMaxScore = v;
-    			if(child.getValue().isWin()) {
-    				actionScore.action = child.getKey();
-    				return actionScore;
+    			if(isMaxPlayer ? v < childScore || (isEarlier && v == childScore) : v > childScore) {
+    				v = childScore;
+    				best = move;
+    			}
+    			if(isMaxPlayer) {
+    				a = Math.max(a, v);
+    			}
+    			else {
+    				b = Math.min(b, v);
     			}
     			if(b <= a) {
+    				int empty = board.getEmptyCount();
+    				history[move] += empty * empty;
     				break;
     			}
     		}
-        	return actionScore;
+    		if(ply == 0) {
+    			bestMove = best;
+    		}
+    	
+    		int score = v,
+    		    bound = (score <= a0) ? UPPER : (score >= b0) ? LOWER : EXACT;
+    		if(!isMaxPlayer) {
+    			score = -score;
+    			bound = (bound == EXACT) ? EXACT : LOWER + UPPER - bound;
+    		}
+    		store(key, score, bound, best, symmetry, board.getEmptyCount(), choice);
+    		return v;
     	}
-
-    }
-    
-    /**
-     * T3ActionScore private nested class that is used in the recursive function to store
-     * the utility score as well as the actions leading to that score
-     */
-    private class T3ActionScore {
     	
-    	// Private Fields
-    	// ----------------------
-    	private T3Action action;
-    	private int miniMaxScore;
+    	/**
+    	 * Searches every move but the first from the search board at once, each by
+    	 * an idle Searcher on the pool, and leaves their scores in splitScores[ply]
+    	 * at the moves' indices once all are done. The Searchers are made idle
+    	 * again once their scores are read.
+    	 * @param moves The sorted moves from the board
+    	 * @param count The number of moves
+    	 * @param a The minimum integer value for every move's search
+    	 * @param b The maximum integer value for every move's search
+    	 * @param isMaxPlayer Whether the player after the moves is the max player
+    	 * @param ply The depth of the board
+    	 */
+    	private void searchInParallel(int[] moves, int count, int a, int b, boolean isMaxPlayer, int ply) {
+    		if(splitScores[ply] == null) {
+    			splitScores[ply] = new int[T3Board.MAX_MOVES];
+    		}
+    		if(splitChildren[ply] == null) {
+    			splitChildren[ply] = new Searcher[T3Board.MAX_MOVES];
+    		}
+    		int[] scores = splitScores[ply];
+    		Searcher[] children = splitChildren[ply];
+    		for(int i = 1; i < count; i++) {
+    			Searcher child = idleSearchers.poll();
+    			if(child == null) {
+    				child = new Searcher(new T3Board(board));
+    			}
+    			child.reset(this, moves[i]);
+    			child.task.setWindow(a, b, isMaxPlayer, ply + 1);
+    			children[i] = child;
+    		}
+    		//the last moves are forked first, so that the first ones are on top of
+    		//this thread's queue when it comes to join them
+    		for(int i = count - 1; i > 1; i--) {
+    			children[i].task.fork();
+    		}
+    		children[1].task.invoke();
+    		for(int i = 2; i < count; i++) {
+    			children[i].task.join();
+    		}
+    		for(int i = 1; i < count; i++) {
+    			scores[i] = children[i].task.score;
+    			nodes += children[i].nodes;
+    			idleSearchers.push(children[i]);
+    			children[i] = null;
+    		}
+    	}
+    	
+    	/**
+    	 * Sorts the moves from the search board, stably, by their ordering keys: the
+    	 * table move first, then moves into cells where the opponent threatens to
+    	 * win, then the rest by history. Without move ordering, only the table move
+    	 * is moved to the front.
+    	 * @param moves The moves from the board
+    	 * @param count The number of moves
+    	 * @param tableMove The table's best move from the board, or NO_MOVE
+    	 * @param ply The depth of the board, whose key buffer is used
+    	 */
+    	private void sortMoves(int[] moves, int count, int tableMove, int ply) {
+    		int threats = orderMoves ? board.getThreatCells() : 0;
+    		int[] keys = orderKeys[ply];
+    		for(int i = 0; i < count; i++) {
+    			int move = moves[i];
+    			keys[i] = (move == tableMove) ? TABLE_MOVE_KEY :
+    			          !orderMoves ? 0 :
+    			          ((threats >>> (move >>> 3) & 1) != 0 ? BLOCK_KEY : 0) + history[move];
+    		}
+    		//insertion sort, as there are at most 27 moves and it keeps ties in order
+    		for(int i = 1; i < count; i++) {
+    			int move = moves[i], moveKey = keys[i], j = i;
+    			for(; j > 0 && keys[j - 1] < moveKey; j--) {
+    				moves[j] = moves[j - 1];
+    				keys[j] = keys[j - 1];
+    			}
+    			moves[j] = move;
+    			keys[j] = moveKey;
+    		}
+    	}
     	
     	/**
-    	 * Constructs a T3ActionScore object to be utilized in our pruning method
-    	 * 
-    	 * @param action A T3Action variable that stores the action involved with a T3state
-    	 * @param miniMaxScore A utility score that is assigned to the player based on a win, loss, or tie
+    	 * Drops every root move that leads to a board symmetric to that of an
+    	 * earlier move, keeping the rest in order
+    	 * @param moves The moves from the root board
+    	 * @param count The number of moves
+    	 * @return The number of moves kept
     	 */
-    	private T3ActionScore(T3Action action, int miniMaxScore) {    	
-    		this.action = action;
-    		this.miniMaxScore = miniMaxScore;    		
+    	private int removeSymmetricMoves(int[] moves, int count) {
+    		int kept = 0;
+    		for(int i = 0; i < count; i++) {
+    			board.make(moves[i]);
+    			long canonical = T3State.canonicalOf(board.getBoard());
+    			board.unmake(moves[i]);
+    			int j = 0;
+    			while(j < kept && rootSeen[j] != canonical) {
+    				j++;
+    			}
+    			if(j == kept) {
+    				rootSeen[kept] = canonical;
+    				moves[kept++] = moves[i];
+    			}
+    		}
+    		return kept;
     	}
-    }	
+    	
+    	/**
+    	 * Task private nested class that runs its Searcher on the pool over one
+    	 * window, so that the Searcher itself need not be a (serializable)
+    	 * fork/join task. Made once per Searcher and rerun for each window.
+    	 */
+    	private class Task extends RecursiveAction {
+    		
+    		private static final long serialVersionUID = 1L;
+    		
+    		// The window searched, and the score found for it
+    		private int a, b, ply, score;
+    		private boolean isMaxPlayer;
+    		
+    		/**
+    		 * Sets the window that the Searcher searches as a task, and readies the
+    		 * task to be run again
+    		 */
+    		private void setWindow(int a, int b, boolean isMaxPlayer, int ply) {
+    			this.a = a;
+    			this.b = b;
+    			this.isMaxPlayer = isMaxPlayer;
+    			this.ply = ply;
+    			reinitialize();
+    		}
+    		
+    		@Override
+    		protected void compute() {
+    			score = alphaBetaPrune(a, b, isMaxPlayer, ply);
+    		}
+    	}
+    }
 }
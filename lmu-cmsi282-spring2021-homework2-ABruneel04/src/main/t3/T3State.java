@@ -1,25 +1,60 @@
 package main.t3;
 
 import java.util.*;
-import java.util.stream.IntStream;
 
 /**
  * T3 Game Board State, which includes not only which spots have numbers
  * played, but also whose turn the current board state is upon. Contains useful
- * methods to be used by a minimax agent.
+ * methods to be used by a minimax agent. The whole state is packed into a
+ * single long, so states are immutable and cost one small object apiece.
  */
 public class T3State {
     
     // Private Fields
     // -----------------------------------------------------------------------------
-    private int[][] state;
-    private boolean oddTurn;
+    private final long board;
     
     // Private Constants
     // -----------------------------------------------------------------------------
     private static final int MAX_MOVE = 6;
     private static final int WIN_TARGET = 13;
     
+    // Packed Board Layout
+    // -----------------------------------------------------------------------------
+    // The board is packed into a single long: the cell at (col, row) holds its
+    // number (0 if empty) in the 3 bits starting at bit 3 * (row * 3 + col), and
+    // bit 27 is set on the odd player's turn
+    static final int CELL_BITS = 3, CELLS = 9;
+    static final long CELL_MASK = 0b111,
+                      TURN_BIT = 1L << (CELL_BITS * CELLS),
+                      LOW_BITS = 0b001_001_001_001_001_001_001_001_001L;
+    private static final int[] ODD_MOVES = {1, 3, 5}, EVEN_MOVES = {2, 4, 6};
+    
+    // Board Symmetries
+    // -----------------------------------------------------------------------------
+    // The 8 rotations and reflections of the board, none of which changes any
+    // line's sum: SYMMETRIES[s][cell] is the cell that the given one (numbered
+    // row * 3 + col) is carried to by symmetry s, and INVERSES[s] undoes it
+    static final int SYMMETRY_COUNT = 8;
+    static final int[][] SYMMETRIES = new int[SYMMETRY_COUNT][CELLS],
+                         INVERSES = new int[SYMMETRY_COUNT][CELLS];
+    static {
+        for (int s = 0; s < SYMMETRY_COUNT; s++) {
+            for (int cell = 0; cell < CELLS; cell++) {
+                int col = cell % 3, row = cell / 3;
+                // Reflect left to right for the upper half, then rotate by quarter turns
+                if (s >= 4) { col = 2 - col; }
+                for (int turn = 0; turn < s % 4; turn++) {
+                    int rotated = 2 - row;
+                    row = col;
+                    col = rotated;
+                }
+                SYMMETRIES[s][cell] = row * 3 + col;
+                INVERSES[s][row * 3 + col] = cell;
+            }
+        }
+    }
+    
     // Constructors
     // -----------------------------------------------------------------------------
     
@@ -28,19 +63,37 @@ public class T3State {
      * @param oddTurn Whether or not P1 places odds
      */
     public T3State (boolean oddTurn) {
-        this.state = new int[3][3];
-        this.oddTurn = oddTurn;
+        this.board = oddTurn ? TURN_BIT : 0;
     }
     
     /**
-     * Constructs a new T3 board-state with the given configuration (Warning:
-     * not a deep copy of the 2D int array).
+     * Constructs a new T3 board-state with the given configuration, which is
+     * copied into the packed board (later changes to the array are not seen).
      * @param oddTurn Whether or not P1 places odds
      * @param state 2D array of ints with the starting game configuration
+     * @throws IllegalArgumentException if a cell holds a number outside of 0 to
+     * MAX_MOVE, which its bits of the packed board cannot hold
      */
     public T3State (boolean oddTurn, int[][] state) {
-        this.state = state;
-        this.oddTurn = oddTurn;
+        long packed = oddTurn ? TURN_BIT : 0;
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                int number = state[row][col];
+                if (number < 0 || number > MAX_MOVE) {
+                    throw new IllegalArgumentException(number + " at (" + col + "," + row + ") is not a T3 number");
+                }
+                packed |= (long) number << shiftOf(col, row);
+            }
+        }
+        this.board = packed;
+    }
+    
+    /**
+     * Constructs a T3 board-state directly from its packed board.
+     * @param board The packed cells and turn bit
+     */
+    T3State (long board) {
+        this.board = board;
     }
     
     // Methods
@@ -55,11 +108,11 @@ public class T3State {
      * @return true if act is legal from this state, false otherwise
      */
     public boolean isValidAction (T3Action act) {
-        return act.col >= 0 && act.col < state.length && 
-               act.row >= 0 && act.col < state[0].length &&
+        return act.col >= 0 && act.col < 3 && 
+               act.row >= 0 && act.row < 3 &&
                act.move >= 0 && act.move <= MAX_MOVE &&
-               ((this.oddTurn) ? act.move % 2 == 1 : act.move % 2 == 0) &&
-               state[act.row][act.col] == 0;
+               (act.move & 1) == (board >>> (CELL_BITS * CELLS)) &&
+               (board & (CELL_MASK << shiftOf(act.col, act.row))) == 0;
     }
     
     /**
@@ -74,11 +127,7 @@ public class T3State {
         if (!isValidAction(act)) {
             throw new IllegalArgumentException("Chosen action " + act + " is invalid!");
         }
-        
-        T3State nextState = this.clone();
-        nextState.state[act.row][act.col] = act.move;
-        nextState.oddTurn = ! this.oddTurn;
-        return nextState;
+        return new T3State((board | (long) act.move << shiftOf(act.col, act.row)) ^ TURN_BIT);
     }
     
     /**
@@ -87,7 +136,7 @@ public class T3State {
      * @return An array of the possible numbers that can be placed, e.g. [1, 2, 3] for odds.
      */
     public int[] getMoves () {
-        return IntStream.range(1, MAX_MOVE+1).filter(i -> (this.oddTurn) ? i % 2 == 1 : i % 2 == 0).toArray();
+        return (isOddTurn() ? ODD_MOVES : EVEN_MOVES).clone();
     }
     
     /**
@@ -98,10 +147,10 @@ public class T3State {
      */
     public Map<T3Action,T3State> getTransitions () {
     	Map<T3Action, T3State> transitionMap = new TreeMap<T3Action, T3State>();
-    	int[] moveChoices = getMoves();
-    	for(int row = 0; row < state.length; row++) {
-    		for (int col = 0; col < state[0].length; col++) {
-    			if(state[row][col] == 0) {
+    	int[] moveChoices = isOddTurn() ? ODD_MOVES : EVEN_MOVES;
+    	for(int row = 0; row < 3; row++) {
+    		for (int col = 0; col < 3; col++) {
+    			if(getCell(col, row) == 0) {
     				for(int i = 0; i < moveChoices.length; i++) {
     					T3Action action = new T3Action(col, row, moveChoices[i]);
     					T3State nextState = getNextState(action);
@@ -120,16 +169,21 @@ public class T3State {
      * @return true if the state is a winning terminal, false otherwise
      */
     public boolean isWin () {
-        return Arrays.asList(
-            IntStream.range(0, 3).map(i -> state[i][0]).sum(), // col 0
-            IntStream.range(0, 3).map(i -> state[i][1]).sum(), // col 1
-            IntStream.range(0, 3).map(i -> state[i][2]).sum(), // col 2
-            IntStream.range(0, 3).map(i -> state[i][i]).sum(), // diag TL->BR
-            IntStream.range(0, 3).map(i -> state[0+i][2-i]).sum(), // diag TR->BL
-            IntStream.of(state[0]).sum(), // row0
-            IntStream.of(state[1]).sum(), // row1
-            IntStream.of(state[2]).sum()  // row2
-        ).contains(WIN_TARGET);
+        return isWin(board);
+    }
+    
+    /**
+     * @param board A packed board
+     * @return Whether any line of the board sums to the WIN_TARGET
+     */
+    static boolean isWin (long board) {
+        int c0 = (int) board & 7, c1 = (int) (board >>> 3) & 7, c2 = (int) (board >>> 6) & 7,
+            c3 = (int) (board >>> 9) & 7, c4 = (int) (board >>> 12) & 7, c5 = (int) (board >>> 15) & 7,
+            c6 = (int) (board >>> 18) & 7, c7 = (int) (board >>> 21) & 7, c8 = (int) (board >>> 24) & 7;
+        // Non-short-circuiting, so every line is summed without a branch
+        return (c0 + c3 + c6 == WIN_TARGET) | (c1 + c4 + c7 == WIN_TARGET) | (c2 + c5 + c8 == WIN_TARGET) | // cols
+               (c0 + c4 + c8 == WIN_TARGET) | (c2 + c4 + c6 == WIN_TARGET) |                                 // diags
+               (c0 + c1 + c2 == WIN_TARGET) | (c3 + c4 + c5 == WIN_TARGET) | (c6 + c7 + c8 == WIN_TARGET);   // rows
     }
     
     /**
@@ -138,23 +192,94 @@ public class T3State {
      * @return true if a tie game, false otherwise
      */
     public boolean isTie () {
-        return !(this.isWin()) && ! Arrays.stream(this.state).flatMapToInt(Arrays::stream).anyMatch(i -> i == 0);
+        return isFull(board) && !isWin(board);
+    }
+    
+    /**
+     * @param col 0-index column of the cell
+     * @param row 0-index row of the cell
+     * @return The number placed in the given cell, or 0 if it is empty
+     */
+    public int getCell (int col, int row) {
+        return (int) (board >>> shiftOf(col, row) & CELL_MASK);
+    }
+    
+    /**
+     * @return Whether it is the odd player's turn in this state
+     */
+    public boolean isOddTurn () {
+        return (board & TURN_BIT) != 0;
+    }
+    
+    /**
+     * @return The packed cells and turn bit of this state
+     */
+    long getBoard () {
+        return board;
+    }
+    
+    /**
+     * Returns the canonical form of this state under the board's rotations and
+     * reflections: of the 8 states that they carry this one to (all of which
+     * have the same minimax value), the one whose packed board is least.
+     * @return The canonical state, which is shared by every state symmetric to this one
+     */
+    public T3State getCanonical () {
+        return new T3State(canonicalOf(board));
+    }
+    
+    /**
+     * @param board A packed board
+     * @return The least of the 8 packed boards symmetric to the given one
+     */
+    static long canonicalOf (long board) {
+        long least = board;
+        for (int s = 1; s < SYMMETRY_COUNT; s++) {
+            least = Math.min(least, transform(board, s));
+        }
+        return least;
+    }
+    
+    /**
+     * @param board A packed board
+     * @param s The index of a symmetry, into SYMMETRIES
+     * @return The packed board with every cell moved to where the symmetry carries it
+     */
+    static long transform (long board, int s) {
+        long moved = board & TURN_BIT;
+        int[] to = SYMMETRIES[s];
+        for (int cell = 0; cell < CELLS; cell++) {
+            moved |= (board >>> (CELL_BITS * cell) & CELL_MASK) << (CELL_BITS * to[cell]);
+        }
+        return moved;
+    }
+    
+    /**
+     * @param board A packed board
+     * @return Whether every cell holds a number: ORing each cell's three bits
+     * down into its lowest one leaves LOW_BITS exactly when none is empty.
+     */
+    static boolean isFull (long board) {
+        return ((board | board >>> 1 | board >>> 2) & LOW_BITS) == LOW_BITS;
+    }
+    
+    /**
+     * @return The offset of the 3 bits that hold the cell at (col, row)
+     */
+    static int shiftOf (int col, int row) {
+        return CELL_BITS * (row * 3 + col);
     }
     
     @Override
     public T3State clone () {
-        T3State copy = new T3State(this.oddTurn);
-        for (int i = 0; i < state.length; i++) {
-            copy.state[i] = state[i].clone();
-        }
-        return copy;
+        return new T3State(board);
     }
     
     @Override
     public String toString () {
         String result = "";
-        for (int[] r : this.state) {
-            result += Arrays.toString(r) + "\n";
+        for (int row = 0; row < 3; row++) {
+            result += "[" + getCell(0, row) + ", " + getCell(1, row) + ", " + getCell(2, row) + "]\n";
         }
         return result;
     }
@@ -163,13 +288,12 @@ public class T3State {
     public boolean equals (Object other) {
         if (other == this) { return true; }
         if (!(other instanceof T3State)) { return false; }
-        T3State otherCast = (T3State) other;
-        return this.oddTurn == otherCast.oddTurn && Arrays.deepEquals(this.state, otherCast.state);
+        return this.board == ((T3State) other).board;
     }
     
     @Override
     public int hashCode () {
-        return Objects.hash(this.state, this.oddTurn);
+        return Long.hashCode(board);
     }
     
 }
@@ -0,0 +1,259 @@
+package main.t3;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+/**
+ * Precomputed game-theoretic value and best move of every T3 board that can
+ * arise in play, i.e., every board on which the player to move has placed as
+ * many numbers as the other player, or one fewer. The best move is the one
+ * that {@link T3Player#choose(T3State)} would make: an immediately winning move
+ * if there is one, and otherwise the first move of greatest minimax value in
+ * col, row, then move number order.
+ * <p>
+ * Each board has one byte in the file, at an index computed directly from the
+ * board: boards are grouped by which cells hold odds, evens, or nothing (with
+ * one group per player to move), and ranked within their group by the numbers
+ * in their filled cells, so that no two boards share an index and no index is
+ * unused. The file is memory-mapped, so a lookup is one index computation and
+ * one byte read.
+ * <p>
+ * Usage: <code>java main.t3.T3Tablebase FILE</code> writes the tablebase to FILE.
+ */
+public class T3Tablebase {
+
+    // Private Constants
+    // -----------------------------------------------------------------------------
+    private static final int MAGIC = 0x54335442, VERSION = 1, HEADER_BYTES = 12;
+    private static final int CELLS = 9, PATTERNS = 19683; // 3^9
+    private static final int[] POW3 = {1, 3, 9, 27, 81, 243, 729, 2187, 6561, 19683};
+    // Entries pack the value for the player to move (plus 1) into bits 0-1, the
+    // cell of the best move into bits 2-5, and which of the player's 3 numbers it
+    // places into bits 6-7; boards that are already over have no move
+    private static final int NO_CELL = 0xF;
+
+    // Index of the first board of each group, by pattern and then by turn (1 if
+    // odd), or -1 if no board in play has that pattern on that turn
+    private static final int[] GROUP_START = new int[2 * PATTERNS];
+    private static final int SIZE;
+    static {
+        int next = 0;
+        for (int pattern = 0; pattern < PATTERNS; pattern++) {
+            int odds = 0, evens = 0;
+            for (int cell = 0, p = pattern; cell < CELLS; cell++, p /= 3) {
+                if (p % 3 == 1) { odds++; }
+                if (p % 3 == 2) { evens++; }
+            }
+            for (int turn = 0; turn < 2; turn++) {
+                int mover = (turn == 1) ? odds : evens, other = (turn == 1) ? evens : odds;
+                if (other - mover == 0 || other - mover == 1) {
+                    GROUP_START[2 * pattern + turn] = next;
+                    next += POW3[odds + evens];
+                } else {
+                    GROUP_START[2 * pattern + turn] = -1;
+                }
+            }
+        }
+        SIZE = next;
+    }
+
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    private final ByteBuffer entries;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    private T3Tablebase (ByteBuffer entries) {
+        this.entries = entries;
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    public static void main (String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: java main.t3.T3Tablebase FILE");
+            System.exit(2);
+        }
+        long started = System.nanoTime();
+        write(Paths.get(args[0]));
+        System.out.println("Wrote " + SIZE + " boards to " + args[0] + " in " +
+                           (System.nanoTime() - started) / 1_000_000 + " ms");
+    }
+
+    /**
+     * Memory-maps the tablebase in the given file.
+     * @param file A file written by {@link #write(Path)}
+     * @return The tablebase in the file
+     * @throws IOException if the file cannot be read or is not a tablebase
+     */
+    public static T3Tablebase open (Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (mapped.capacity() != HEADER_BYTES + SIZE || mapped.getInt(0) != MAGIC ||
+                mapped.getInt(4) != VERSION || mapped.getInt(8) != SIZE) {
+                throw new IOException(file + " is not a T3 tablebase of version " + VERSION);
+            }
+            return new T3Tablebase(mapped.position(HEADER_BYTES).slice());
+        }
+    }
+
+    /**
+     * Solves every board in play and writes the tablebase to the given file.
+     * @param file The file to write, which is replaced if it exists
+     */
+    public static void write (Path file) throws IOException {
+        byte[] solved = solve();
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+            out.write(ByteBuffer.allocate(HEADER_BYTES).putInt(MAGIC).putInt(VERSION).putInt(SIZE).array());
+            out.write(solved);
+        }
+    }
+
+    /**
+     * Returns the best action from the given state, found in constant time.
+     * @param state A T3 board
+     * @return The action that {@link T3Player#choose(T3State)} would take, or
+     * null if the game is already over or the board cannot arise in play
+     */
+    public T3Action getBestAction (T3State state) {
+        int index = indexOf(state.getBoard());
+        if (index < 0) { return null; }
+        int entry = entries.get(index), cell = (entry >>> 2) & 0xF;
+        if (cell == NO_CELL) { return null; }
+        return new T3Action(cell % 3, cell / 3, 2 * ((entry >>> 6) & 3) + (state.isOddTurn() ? 1 : 2));
+    }
+
+    /**
+     * @param state A T3 board
+     * @return The minimax value of the board for the player to move: 1 for a
+     * win, 0 for a tie, and -1 for a loss
+     * @throws IllegalArgumentException if the board cannot arise in play
+     */
+    public int getValue (T3State state) {
+        int index = indexOf(state.getBoard());
+        if (index < 0) {
+            throw new IllegalArgumentException("Board cannot arise in play:\n" + state);
+        }
+        return (entries.get(index) & 3) - 1;
+    }
+
+    /**
+     * @return The number of boards in the tablebase
+     */
+    public static int size () {
+        return SIZE;
+    }
+
+    /**
+     * @param board A packed board
+     * @return The index of the board in the tablebase, or -1 if it cannot arise in play
+     */
+    static int indexOf (long board) {
+        int pattern = 0, rank = 0;
+        for (int cell = CELLS - 1; cell >= 0; cell--) {
+            int number = (int) (board >>> (T3State.CELL_BITS * cell) & T3State.CELL_MASK);
+            if (number > 6) { return -1; }
+            pattern *= 3;
+            if (number != 0) {
+                // Odds are 1, 3, 5 and evens 2, 4, 6, so (number - 1) / 2 ranks
+                // each among the numbers of its kind
+                pattern += 2 - (number & 1);
+                rank = 3 * rank + (number - 1) / 2;
+            }
+        }
+        int start = GROUP_START[2 * pattern + ((board & T3State.TURN_BIT) != 0 ? 1 : 0)];
+        return (start < 0) ? -1 : start + rank;
+    }
+
+    /**
+     * Solves every board in play, from the fullest boards back to the empty
+     * ones, so that the children of a board are always solved before it.
+     * @return The entry of every board, by index
+     */
+    static byte[] solve () {
+        byte[] solved = new byte[SIZE];
+        for (int filled = CELLS; filled >= 0; filled--) {
+            for (int pattern = 0; pattern < PATTERNS; pattern++) {
+                if (filledOf(pattern) != filled) { continue; }
+                for (int turn = 0; turn < 2; turn++) {
+                    int start = GROUP_START[2 * pattern + turn];
+                    if (start < 0) { continue; }
+                    for (int rank = 0; rank < POW3[filled]; rank++) {
+                        solved[start + rank] = solveBoard(boardOf(pattern, turn, rank), solved);
+                    }
+                }
+            }
+        }
+        return solved;
+    }
+
+    /**
+     * @param board A packed board in play
+     * @param solved The entries of every board with more cells filled
+     * @return The entry of the given board
+     */
+    private static byte solveBoard (long board, byte[] solved) {
+        T3State state = new T3State(board);
+        if (state.isWin()) {
+            return entryOf(-1, NO_CELL, 0);
+        }
+        if (state.isTie()) {
+            return entryOf(0, NO_CELL, 0);
+        }
+        // Moves are tried in the order that T3Player breaks ties in
+        int odd = state.isOddTurn() ? 1 : 0, best = Integer.MIN_VALUE, bestCell = NO_CELL, bestSlot = 0;
+        for (int col = 0; col < 3; col++) {
+            for (int row = 0; row < 3; row++) {
+                int cell = row * 3 + col;
+                if (state.getCell(col, row) != 0) { continue; }
+                for (int slot = 0; slot < 3; slot++) {
+                    long child = (board | (long) (2 * slot + 2 - odd) << (T3State.CELL_BITS * cell)) ^ T3State.TURN_BIT;
+                    if (new T3State(child).isWin()) {
+                        return entryOf(1, cell, slot);
+                    }
+                    int value = 1 - (solved[indexOf(child)] & 3);
+                    if (value > best) {
+                        best = value;
+                        bestCell = cell;
+                        bestSlot = slot;
+                    }
+                }
+            }
+        }
+        return entryOf(best, bestCell, bestSlot);
+    }
+
+    /**
+     * @return The packed board with the given pattern, turn, and rank
+     */
+    private static long boardOf (int pattern, int turn, int rank) {
+        long board = (turn == 1) ? T3State.TURN_BIT : 0;
+        // Ranks were built from the last cell to the first, so the first cell's
+        // number is the least significant digit
+        for (int cell = 0, p = pattern; cell < CELLS; cell++, p /= 3) {
+            if (p % 3 == 0) { continue; }
+            int number = 2 * (rank % 3) + (p % 3 == 1 ? 1 : 2);
+            rank /= 3;
+            board |= (long) number << (T3State.CELL_BITS * cell);
+        }
+        return board;
+    }
+
+    private static int filledOf (int pattern) {
+        int filled = 0;
+        for (int cell = 0; cell < CELLS; cell++, pattern /= 3) {
+            if (pattern % 3 != 0) { filled++; }
+        }
+        return filled;
+    }
+
+    private static byte entryOf (int value, int cell, int slot) {
+        return (byte) ((value + 1) | cell << 2 | slot << 6);
+    }
+
+}
@@ -0,0 +1,186 @@
+package main.t3;
+
+import java.util.SplittableRandom;
+
+/**
+ * Rules of a variant of Tic-Tac-Total: the board is size x size, the odd
+ * player places the odd numbers from 1 to maxMove and the even player the even
+ * ones, and whoever fills a row, col, or diagonal so that it sums to the win
+ * target wins. The standard game, which {@link T3State} plays, is 3 x 3 with
+ * numbers up to 6 and a target of 13.
+ * <p>
+ * Every line of the board, and the lines through each cell, are computed once
+ * here and shared by every state and board of the variant.
+ */
+public class T3Variant {
+
+    // Constants
+    // -----------------------------------------------------------------------------
+    /**
+     * The standard game: 3 x 3, numbers up to 6, and a target of 13.
+     */
+    public static final T3Variant STANDARD = new T3Variant(3, 6, 13);
+
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    private final int size, maxMove, winTarget;
+    private final int[] oddMoves, evenMoves;
+    // lines[line] lists the cells (row * size + col) of each line: the cols,
+    // then the two diagonals, then the rows; linesThrough[cell] lists the lines
+    // that pass through each cell
+    private final int[][] lines, linesThrough;
+    // Random keys for every number in every cell, plus one for the odd player's
+    // turn; a board's Zobrist key is the XOR of the keys of everything on it
+    private final long[][] zobristCells;
+    private final long zobristTurn;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Constructs the rules of a variant. Moves on its boards are packed into
+     * 16 bits, so a board may have no more than 65535 / (maxMove + 1) cells.
+     * @param size The number of cols and rows on the board
+     * @param maxMove The greatest number either player may place, at least 2
+     * @param winTarget The sum that wins a line
+     * @throws IllegalArgumentException if the board is too small or too large
+     * for its moves, or a player has no numbers to place
+     */
+    public T3Variant (int size, int maxMove, int winTarget) {
+        if (size < 1 || maxMove < 2 || (long) size * size * (maxMove + 1) > 0xFFFF) {
+            throw new IllegalArgumentException("No " + size + " x " + size + " variant with numbers up to " + maxMove);
+        }
+        this.size = size;
+        this.maxMove = maxMove;
+        this.winTarget = winTarget;
+        this.oddMoves = new int[(maxMove + 1) / 2];
+        this.evenMoves = new int[maxMove / 2];
+        for (int i = 0; i < oddMoves.length; i++) { oddMoves[i] = 2 * i + 1; }
+        for (int i = 0; i < evenMoves.length; i++) { evenMoves[i] = 2 * i + 2; }
+
+        lines = new int[2 * size + 2][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                lines[i][j] = j * size + i;                // col i
+                lines[size + 2 + i][j] = i * size + j;     // row i
+            }
+            lines[size][i] = i * size + i;                 // diagonal
+            lines[size + 1][i] = i * size + size - 1 - i;  // anti-diagonal
+        }
+        int[] counts = new int[size * size];
+        for (int[] line : lines) {
+            for (int cell : line) { counts[cell]++; }
+        }
+        linesThrough = new int[size * size][];
+        for (int cell = 0; cell < counts.length; cell++) {
+            linesThrough[cell] = new int[counts[cell]];
+            counts[cell] = 0;
+        }
+        for (int line = 0; line < lines.length; line++) {
+            for (int cell : lines[line]) {
+                linesThrough[cell][counts[cell]++] = line;
+            }
+        }
+
+        SplittableRandom rng = new SplittableRandom(282);
+        zobristCells = new long[size * size][maxMove + 1];
+        for (long[] cell : zobristCells) {
+            for (int number = 1; number <= maxMove; number++) {
+                cell[number] = rng.nextLong();
+            }
+        }
+        zobristTurn = rng.nextLong();
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    public int getSize () {
+        return size;
+    }
+
+    public int getMaxMove () {
+        return maxMove;
+    }
+
+    public int getWinTarget () {
+        return winTarget;
+    }
+
+    /**
+     * @return The number of cells on the board
+     */
+    public int getCellCount () {
+        return size * size;
+    }
+
+    /**
+     * @return The number of lines on the board: every col and row, and both diagonals
+     */
+    public int getLineCount () {
+        return lines.length;
+    }
+
+    /**
+     * @param oddTurn Whether it is the odd player's turn
+     * @param number A number to place
+     * @return Whether the number may be placed by the player whose turn it is
+     */
+    public boolean isMoveOf (boolean oddTurn, int number) {
+        return number >= 1 && number <= maxMove && (number & 1) == (oddTurn ? 1 : 0);
+    }
+
+    /**
+     * @return The numbers that the player may place, in ascending order; not to be modified
+     */
+    int[] movesOf (boolean oddTurn) {
+        return oddTurn ? oddMoves : evenMoves;
+    }
+
+    /**
+     * @return The cells of every line; not to be modified
+     */
+    int[][] lines () {
+        return lines;
+    }
+
+    /**
+     * @return The lines through every cell; not to be modified
+     */
+    int[][] linesThrough () {
+        return linesThrough;
+    }
+
+    /**
+     * @return The Zobrist key of every number in every cell; not to be modified
+     */
+    long[][] zobristCells () {
+        return zobristCells;
+    }
+
+    /**
+     * @return The Zobrist key of the odd player's turn
+     */
+    long zobristTurn () {
+        return zobristTurn;
+    }
+
+    @Override
+    public String toString () {
+        return size + " x " + size + ", numbers up to " + maxMove + ", target " + winTarget;
+    }
+
+    @Override
+    public boolean equals (Object other) {
+        if (other == this) { return true; }
+        if (!(other instanceof T3Variant)) { return false; }
+        T3Variant variant = (T3Variant) other;
+        return size == variant.size && maxMove == variant.maxMove && winTarget == variant.winTarget;
+    }
+
+    @Override
+    public int hashCode () {
+        return (size * 31 + maxMove) * 31 + winTarget;
+    }
+
+}
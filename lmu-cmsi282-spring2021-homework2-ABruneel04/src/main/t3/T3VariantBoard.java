@@ -0,0 +1,248 @@
+package main.t3;
+
+/**
+ * Mutable board of a {@link T3Variant} for searching in place, as T3Board is
+ * for the standard game: moves are made and unmade on one board and generated
+ * into a buffer that the caller owns. The board keeps every line's sum and
+ * number of filled cells, its number of empty and of won lines, and its
+ * Zobrist key, each updated with every move made or unmade, so that checking
+ * for a win or a tie takes one comparison and checking whether a move wins or
+ * blocks a win looks only at the lines through its cell.
+ * <p>
+ * Moves are ints, cell * (maxMove + 1) + number, where cell is row * size + col;
+ * see {@link #moveOf(int, int, int)}.
+ */
+public class T3VariantBoard {
+
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    private final T3Variant variant;
+    private final int size, stride, winTarget;
+    private final int[][] linesThrough;
+    private final long[][] zobristCells;
+    private final int[] cells, lineSums, lineFilled;
+    private boolean oddTurn;
+    private int emptyCount, wonLines;
+    private long key;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Constructs a board holding the given state
+     * @param state The state to start from
+     */
+    public T3VariantBoard (T3VariantState state) {
+        variant = state.getVariant();
+        size = variant.getSize();
+        stride = variant.getMaxMove() + 1;
+        winTarget = variant.getWinTarget();
+        linesThrough = variant.linesThrough();
+        zobristCells = variant.zobristCells();
+        cells = new int[variant.getCellCount()];
+        lineSums = new int[variant.getLineCount()];
+        lineFilled = new int[variant.getLineCount()];
+        oddTurn = state.isOddTurn();
+        emptyCount = cells.length;
+        key = oddTurn ? variant.zobristTurn() : 0;
+        int[] numbers = state.cells();
+        for (int cell = 0; cell < cells.length; cell++) {
+            if (numbers[cell] != 0) { place(cell, numbers[cell]); }
+        }
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Places a number and passes the turn. The move is assumed to be legal.
+     * @param move A move generated from this board
+     */
+    public void make (int move) {
+        place(move / stride, move % stride);
+        oddTurn = !oddTurn;
+        key ^= variant.zobristTurn();
+    }
+
+    /**
+     * Takes back a number and the turn; the exact reverse of {@link #make(int)}.
+     * @param move The move last made on this board
+     */
+    public void unmake (int move) {
+        int cell = move / stride, number = move % stride;
+        for (int line : linesThrough[cell]) {
+            if (isWon(line)) { wonLines--; }
+            lineSums[line] -= number;
+            lineFilled[line]--;
+        }
+        cells[cell] = 0;
+        emptyCount++;
+        key ^= zobristCells[cell][number] ^ variant.zobristTurn();
+        oddTurn = !oddTurn;
+    }
+
+    /**
+     * Writes every legal move from this board into the given buffer, ordered by
+     * col, then row, then number, i.e., the order in which ties are broken.
+     * @param moves A buffer of at least {@link #getMaxMoves()} ints
+     * @return The number of moves written
+     */
+    public int generateMoves (int[] moves) {
+        int[] numbers = variant.movesOf(oddTurn);
+        int count = 0;
+        for (int col = 0; col < size; col++) {
+            for (int cell = col; cell < cells.length; cell += size) {
+                if (cells[cell] != 0) { continue; }
+                for (int number : numbers) {
+                    moves[count++] = cell * stride + number;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return The most moves that can be generated from any board of this variant
+     */
+    public int getMaxMoves () {
+        return cells.length * Math.max(variant.movesOf(true).length, variant.movesOf(false).length);
+    }
+
+    /**
+     * @return true if the last move made won, false otherwise
+     */
+    public boolean isWin () {
+        return wonLines > 0;
+    }
+
+    /**
+     * @return true if every cell is filled and the last move did not win
+     */
+    public boolean isTie () {
+        return emptyCount == 0 && wonLines == 0;
+    }
+
+    /**
+     * @param move A move generated from this board
+     * @return true if making the move would win, false otherwise
+     */
+    public boolean isWinningMove (int move) {
+        int number = move % stride;
+        for (int line : linesThrough[move / stride]) {
+            if (lineFilled[line] == size - 1 && lineSums[line] + number == winTarget) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * @param move A move generated from this board
+     * @return true if the move fills the last empty cell of a line that the
+     * other player could otherwise win on their next turn, false otherwise
+     */
+    public boolean isBlockingMove (int move) {
+        for (int line : linesThrough[move / stride]) {
+            if (lineFilled[line] == size - 1 && variant.isMoveOf(!oddTurn, winTarget - lineSums[line])) { return true; }
+        }
+        return false;
+    }
+
+    public T3Variant getVariant () {
+        return variant;
+    }
+
+    public boolean isOddTurn () {
+        return oddTurn;
+    }
+
+    /**
+     * @param col 0-index column of the cell
+     * @param row 0-index row of the cell
+     * @return The number placed in the given cell, or 0 if it is empty
+     */
+    public int getCell (int col, int row) {
+        return cells[row * size + col];
+    }
+
+    /**
+     * @param line The index of a line: the cols, then the diagonal and
+     * anti-diagonal, then the rows
+     * @return The sum of the numbers on the line
+     */
+    public int getLineSum (int line) {
+        return lineSums[line];
+    }
+
+    /**
+     * @param line The index of a line, as for {@link #getLineSum(int)}
+     * @return The number of filled cells on the line
+     */
+    public int getLineFilled (int line) {
+        return lineFilled[line];
+    }
+
+    /**
+     * @return The number of empty cells on the board
+     */
+    public int getEmptyCount () {
+        return emptyCount;
+    }
+
+    /**
+     * @return The Zobrist key of the board
+     */
+    public long getKey () {
+        return key;
+    }
+
+    /**
+     * @return The state that this board holds
+     */
+    public T3VariantState toState () {
+        return new T3VariantState(variant, oddTurn, cells.clone());
+    }
+
+    /**
+     * @param col 0-index column to place a number within
+     * @param row 0-index row to place a number within
+     * @param number Number to place in the cell
+     * @return The move placing the number
+     */
+    public int moveOf (int col, int row, int number) {
+        return (row * size + col) * stride + number;
+    }
+
+    /**
+     * @param move A move
+     * @return The T3Action making the move
+     */
+    public T3Action toAction (int move) {
+        int cell = move / stride;
+        return new T3Action(cell % size, cell / size, move % stride);
+    }
+
+    /**
+     * @param move A move
+     * @return The position of the move in the order that ties are broken in, by
+     * col, then row, then number
+     */
+    public int tieBreakOrderOf (int move) {
+        int cell = move / stride;
+        return ((cell % size) * size + cell / size) * stride + move % stride;
+    }
+
+    private void place (int cell, int number) {
+        for (int line : linesThrough[cell]) {
+            lineSums[line] += number;
+            lineFilled[line]++;
+            if (isWon(line)) { wonLines++; }
+        }
+        cells[cell] = number;
+        emptyCount--;
+        key ^= zobristCells[cell][number];
+    }
+
+    private boolean isWon (int line) {
+        return lineFilled[line] == size && lineSums[line] == winTarget;
+    }
+
+}
@@ -0,0 +1,348 @@
+package main.t3;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Player for any {@link T3Variant}, for boards whose trees are too large to
+ * search to the end as {@link T3Player} does. Each choice is an iterative
+ * deepening alpha-beta search: the board is searched 1 move deep, then 2, and
+ * so on, scoring boards at the depth limit with a pluggable {@link T3Evaluator},
+ * until the time budget runs out, the result is a proven win or loss, or the
+ * search reaches the end of the game. The choice is the best move of the
+ * deepest search to finish. Each search seeds the next through a transposition
+ * table, which also orders moves together with wins, blocks, and history, as
+ * in T3Player.
+ * <p>
+ * Ties are broken as T3Player breaks them: an immediately winning move first,
+ * and otherwise the move of greatest score first in col, row, then move number
+ * order. Wins are scored higher the sooner they come, and losses lower.
+ * <p>
+ * Like T3Player, a T3VariantPlayer is safe to share between threads: every
+ * choice searches with scratch space of its own, and all of them share the table.
+ */
+public class T3VariantPlayer {
+
+    // Private Constants
+    // -----------------------------------------------------------------------------
+    private static final int DEFAULT_TABLE_ENTRIES = 1 << 18;
+    // Games last at most MAX_PLY moves, as boards have at most 65535 / 3 cells,
+    // so every won or lost game scores further from 0 than WIN - MAX_PLY, which
+    // is further than any evaluation
+    private static final int WIN = 1 << 20, MAX_PLY = 1 << 15, INFINITY = WIN + 1;
+    private static final int EXACT = 1, LOWER = 2, UPPER = 3;
+    // Entries pack the score (offset to be positive), bound, depth searched,
+    // best move, and the search they came from into a long
+    private static final int SCORE_OFFSET = 1 << 21, BOUND_SHIFT = 22, DEPTH_SHIFT = 24,
+                             MOVE_SHIFT = 39, GENERATION_SHIFT = 55;
+    private static final int NO_MOVE = 0, GENERATION_MASK = 0x1FF;
+    // Moves are sorted by key: the table's best move first, then any move that
+    // blocks the opponent from winning next turn, then the rest by history
+    private static final int TABLE_MOVE_KEY = Integer.MAX_VALUE, BLOCK_KEY = 1 << 30;
+    // The clock is read once every this many boards searched
+    private static final int CLOCK_INTERVAL = 1 << 10;
+
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    private final T3Variant variant;
+    private final T3Evaluator evaluator;
+    private final long budgetNanos;
+    // Shared without locks, as in T3Player: each slot's key is stored XORed
+    // with its entry, so a slot torn by two threads matches neither key
+    private final AtomicLongArray tableKeys, tableEntries;
+    private final int tableMask;
+    private final AtomicInteger generation = new AtomicInteger();
+    private volatile Report lastReport = new Report(0, 0, 0);
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Constructs a player of the given variant with a transposition table of the
+     * default size
+     * @param variant The rules of the games to play
+     * @param evaluator The score of boards at the depth limit
+     * @param budgetMillis The time to spend on each choice, in milliseconds;
+     * a search 1 move deep always finishes, however long it takes
+     */
+    public T3VariantPlayer (T3Variant variant, T3Evaluator evaluator, long budgetMillis) {
+        this(variant, evaluator, budgetMillis, DEFAULT_TABLE_ENTRIES);
+    }
+
+    /**
+     * Constructs a player of the given variant with a transposition table of the
+     * given size, which it keeps from one choice to the next
+     * @param variant The rules of the games to play
+     * @param evaluator The score of boards at the depth limit
+     * @param budgetMillis The time to spend on each choice, in milliseconds
+     * @param tableEntries The number of entries in the table, a power of 2
+     */
+    public T3VariantPlayer (T3Variant variant, T3Evaluator evaluator, long budgetMillis, int tableEntries) {
+        if (tableEntries < 1 || Integer.bitCount(tableEntries) != 1) {
+            throw new IllegalArgumentException("Table size " + tableEntries + " is not a power of 2");
+        }
+        this.variant = variant;
+        this.evaluator = evaluator;
+        this.budgetNanos = budgetMillis * 1_000_000;
+        this.tableKeys = new AtomicLongArray(tableEntries);
+        this.tableEntries = new AtomicLongArray(tableEntries);
+        this.tableMask = tableEntries - 1;
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Searches deeper and deeper from the given state until the budget runs
+     * out, and returns the best move of the deepest search to finish.
+     * @param state The state from which the player is making a move decision
+     * @return The player's best action, or null if the game is already over
+     * @throws IllegalArgumentException if the state is of another variant
+     */
+    public T3Action choose (T3VariantState state) {
+        if (!state.getVariant().equals(variant)) {
+            throw new IllegalArgumentException("Cannot play " + state.getVariant() + " with a player of " + variant);
+        }
+        if (state.isWin() || state.isTie()) {
+            lastReport = new Report(0, state.isWin() ? -WIN : 0, 0);
+            return null;
+        }
+        Search search = new Search(state, System.nanoTime() + budgetNanos,
+                                   generation.incrementAndGet() & GENERATION_MASK);
+        int best = NO_MOVE, score = 0, depth = 0;
+        for (int limit = 1; limit <= search.board.getEmptyCount(); limit++) {
+            search.canStop = limit > 1;
+            int result = search.alphaBeta(limit, -INFINITY, INFINITY, 0);
+            if (search.stopped) { break; }
+            best = search.rootBest;
+            score = result;
+            depth = limit;
+            if (Math.abs(score) > WIN - MAX_PLY) { break; }
+        }
+        lastReport = new Report(depth, score, search.nodes);
+        return (best == NO_MOVE) ? null : search.board.toAction(best);
+    }
+
+    /**
+     * @return The depth of the deepest search that finished in the choice that
+     * finished last, 0 if the game was already over
+     */
+    public int getLastDepth () {
+        return lastReport.depth;
+    }
+
+    /**
+     * @return The score of the choice that finished last, for the player who
+     * made it: above T3Evaluator.MAX_SCORE if it wins by force, below
+     * -T3Evaluator.MAX_SCORE if it loses by force, and otherwise heuristic
+     */
+    public int getLastScore () {
+        return lastReport.score;
+    }
+
+    /**
+     * @return The number of boards searched by the choice that finished last,
+     * counting every depth
+     */
+    public long getNodeCount () {
+        return lastReport.nodes;
+    }
+
+    /**
+     * @param key The Zobrist key of a board
+     * @return The table's entry for the board, or 0 if it holds none
+     */
+    private long probe (long key) {
+        int slot = (int) key & tableMask;
+        long entry = tableEntries.get(slot);
+        return ((tableKeys.get(slot) ^ entry) == key) ? entry : 0;
+    }
+
+    /**
+     * Records the result of searching a board in its slot of the table. An entry
+     * left by an earlier choice is always replaced; one from this choice only if
+     * the new board was searched at least as deep.
+     * @param key The Zobrist key of the board
+     * @param score The board's score for the player to move, as kept in the table
+     * @param bound Whether the score is EXACT, or a LOWER or UPPER bound
+     * @param best The best move found from the board, or NO_MOVE if there is none
+     * @param depth The depth the board was searched to
+     * @param generation The choice the search belongs to
+     */
+    private void store (long key, int score, int bound, int best, int depth, int generation) {
+        int slot = (int) key & tableMask;
+        long old = tableEntries.get(slot);
+        if (old != 0 && (tableKeys.get(slot) ^ old) != key &&
+            (int) (old >>> GENERATION_SHIFT) == generation &&
+            ((int) (old >>> DEPTH_SHIFT) & (MAX_PLY - 1)) > depth) {
+            return;
+        }
+        long entry = (score + SCORE_OFFSET) | (long) bound << BOUND_SHIFT | (long) depth << DEPTH_SHIFT |
+                     (long) best << MOVE_SHIFT | (long) generation << GENERATION_SHIFT;
+        tableEntries.set(slot, entry);
+        tableKeys.set(slot, key ^ entry);
+    }
+
+    /**
+     * Scores in the table count wins and losses from the board they belong to
+     * rather than from the root, so that they hold wherever the board is reached.
+     */
+    private static int toTable (int score, int ply) {
+        return (score > WIN - MAX_PLY) ? score + ply : (score < MAX_PLY - WIN) ? score - ply : score;
+    }
+
+    private static int fromTable (int score, int ply) {
+        return (score > WIN - MAX_PLY) ? score - ply : (score < MAX_PLY - WIN) ? score + ply : score;
+    }
+
+    /**
+     * Report private nested class holding the results of the choice that
+     * finished last, published all at once
+     */
+    private static class Report {
+
+        // Private Fields
+        // ----------------------
+        private final int depth, score;
+        private final long nodes;
+
+        private Report (int depth, int score, long nodes) {
+            this.depth = depth;
+            this.score = score;
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * Search private nested class holding one choice's search: the board it makes
+     * and unmakes moves on, its buffers, which it allocates one ply at a time as
+     * the search first reaches it, its move history, and its clock.
+     */
+    private class Search {
+
+        // Private Fields
+        // ----------------------
+        private final T3VariantBoard board;
+        private final int[][] moveBuffers, orderKeys;
+        private final int[] history;
+        private final long deadline;
+        private final int generation;
+        private boolean canStop, stopped;
+        private int rootBest;
+        private long nodes;
+
+        private Search (T3VariantState state, long deadline, int generation) {
+            this.board = new T3VariantBoard(state);
+            this.moveBuffers = new int[board.getEmptyCount() + 1][];
+            this.orderKeys = new int[board.getEmptyCount() + 1][];
+            this.history = new int[variant.getCellCount() * (variant.getMaxMove() + 1)];
+            this.deadline = deadline;
+            this.generation = generation;
+        }
+
+        /**
+         * Alpha-beta search of the board to the given depth, scored for the
+         * player to move (negamax). Boards other than the root are first looked
+         * up in the table, whose score ends the search if it was searched at
+         * least as deep and is exact or falls outside of alpha-beta, and whose
+         * best move is otherwise searched first (at the root too, where it is
+         * the best move of the last, shallower search). Any immediately winning
+         * move ends the search at once. At the root, a move that comes before
+         * the best found so far in tie-break order is searched with a window
+         * just wide enough to tell whether it ties it, as in T3Player.
+         * Once the clock has run out, the search unwinds without storing anything.
+         * @param depth The number of moves still to search
+         * @param alpha The score the player to move is already assured of
+         * @param beta The score the other player is already assured of
+         * @param ply The number of moves made on the board since the root
+         * @return The score of the board for the player to move
+         */
+        private int alphaBeta (int depth, int alpha, int beta, int ply) {
+            nodes++;
+            if (canStop && nodes % CLOCK_INTERVAL == 0 && System.nanoTime() - deadline > 0) {
+                stopped = true;
+            }
+            if (stopped) { return 0; }
+            if (board.isWin()) { return ply - WIN; }
+            if (board.isTie()) { return 0; }
+            if (depth == 0) { return evaluator.evaluate(board); }
+
+            long key = board.getKey();
+            int tableMove = NO_MOVE;
+            long entry = probe(key);
+            if (entry != 0) {
+                int score = fromTable((int) (entry & (2 * SCORE_OFFSET - 1)) - SCORE_OFFSET, ply),
+                    bound = (int) (entry >>> BOUND_SHIFT) & 3,
+                    searched = (int) (entry >>> DEPTH_SHIFT) & (MAX_PLY - 1);
+                if (ply > 0 && searched >= depth &&
+                    (bound == EXACT || (bound == LOWER && score >= beta) || (bound == UPPER && score <= alpha))) {
+                    return score;
+                }
+                tableMove = (int) (entry >>> MOVE_SHIFT) & 0xFFFF;
+            }
+            if (moveBuffers[ply] == null) {
+                moveBuffers[ply] = new int[board.getMaxMoves()];
+                orderKeys[ply] = new int[board.getMaxMoves()];
+            }
+            int[] moves = moveBuffers[ply];
+            int count = board.generateMoves(moves);
+            // Moves are generated in tie-break order, so the first winning move
+            // is the one the root must take
+            for (int i = 0; i < count; i++) {
+                if (board.isWinningMove(moves[i])) {
+                    if (ply == 0) { rootBest = moves[i]; }
+                    store(key, toTable(WIN - ply - 1, ply), EXACT, moves[i], MAX_PLY - 1, generation);
+                    return WIN - ply - 1;
+                }
+            }
+            sortMoves(moves, count, tableMove, ply);
+
+            int alpha0 = alpha, best = NO_MOVE, v = -INFINITY;
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                boolean isEarlier = ply == 0 && best != NO_MOVE &&
+                                    board.tieBreakOrderOf(move) < board.tieBreakOrderOf(best);
+                board.make(move);
+                int score = -alphaBeta(depth - 1, -beta, -(isEarlier ? v - 1 : alpha), ply + 1);
+                board.unmake(move);
+                if (stopped) { return 0; }
+                if (score > v || (isEarlier && score == v)) {
+                    v = score;
+                    best = move;
+                }
+                alpha = Math.max(alpha, v);
+                if (alpha >= beta) {
+                    history[move] += depth * depth;
+                    break;
+                }
+            }
+            if (ply == 0) { rootBest = best; }
+            int bound = (v <= alpha0) ? UPPER : (v >= beta) ? LOWER : EXACT;
+            store(key, toTable(v, ply), bound, best, depth, generation);
+            return v;
+        }
+
+        /**
+         * Sorts the moves from the board, stably, by their ordering keys: the
+         * table move first, then blocks, then the rest by history.
+         */
+        private void sortMoves (int[] moves, int count, int tableMove, int ply) {
+            int[] keys = orderKeys[ply];
+            for (int i = 0; i < count; i++) {
+                int move = moves[i];
+                keys[i] = (move == tableMove) ? TABLE_MOVE_KEY :
+                          (board.isBlockingMove(move) ? BLOCK_KEY : 0) + history[move];
+            }
+            for (int i = 1; i < count; i++) {
+                int move = moves[i], moveKey = keys[i], j = i;
+                for (; j > 0 && keys[j - 1] < moveKey; j--) {
+                    moves[j] = moves[j - 1];
+                    keys[j] = keys[j - 1];
+                }
+                moves[j] = move;
+                keys[j] = moveKey;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,209 @@
+package main.t3;
+
+import java.util.*;
+
+/**
+ * Board state of a game of a {@link T3Variant}: the number in every cell and
+ * whose turn it is. Like T3State, states are immutable, and taking an action
+ * returns a new one.
+ */
+public class T3VariantState {
+
+    // Private Fields
+    // -----------------------------------------------------------------------------
+    private final T3Variant variant;
+    private final boolean oddTurn;
+    // cells[row * size + col] holds the number placed there, or 0 if it is empty
+    private final int[] cells;
+
+    // Constructors
+    // -----------------------------------------------------------------------------
+
+    /**
+     * Constructs a new, blank board-state of the given variant
+     * @param variant The rules of the game
+     * @param oddTurn Whether or not P1 places odds
+     */
+    public T3VariantState (T3Variant variant, boolean oddTurn) {
+        this(variant, oddTurn, new int[variant.getCellCount()]);
+    }
+
+    /**
+     * Constructs a new board-state of the given variant with the given
+     * configuration, which is copied (later changes to the array are not seen).
+     * @param variant The rules of the game
+     * @param oddTurn Whether or not P1 places odds
+     * @param state 2D array of ints with the starting game configuration, by row then col
+     * @throws IllegalArgumentException if the configuration is not a board of the
+     * variant's size holding only its numbers
+     */
+    public T3VariantState (T3Variant variant, boolean oddTurn, int[][] state) {
+        this(variant, oddTurn, new int[variant.getCellCount()]);
+        int size = variant.getSize();
+        if (state.length != size) {
+            throw new IllegalArgumentException("Expected " + size + " rows, not " + state.length);
+        }
+        for (int row = 0; row < size; row++) {
+            if (state[row].length != size) {
+                throw new IllegalArgumentException("Expected " + size + " cols in row " + row + ", not " + state[row].length);
+            }
+            for (int col = 0; col < size; col++) {
+                int number = state[row][col];
+                if (number < 0 || number > variant.getMaxMove()) {
+                    throw new IllegalArgumentException(number + " at (" + col + "," + row + ") is not a number of " + variant);
+                }
+                cells[row * size + col] = number;
+            }
+        }
+    }
+
+    /**
+     * Constructs a board-state directly from its cells, which it takes ownership of.
+     */
+    T3VariantState (T3Variant variant, boolean oddTurn, int[] cells) {
+        this.variant = variant;
+        this.oddTurn = oddTurn;
+        this.cells = cells;
+    }
+
+    // Methods
+    // -----------------------------------------------------------------------------
+
+    public T3Variant getVariant () {
+        return variant;
+    }
+
+    /**
+     * @return Whether it is the odd player's turn in this state
+     */
+    public boolean isOddTurn () {
+        return oddTurn;
+    }
+
+    /**
+     * @param col 0-index column of the cell
+     * @param row 0-index row of the cell
+     * @return The number placed in the given cell, or 0 if it is empty
+     */
+    public int getCell (int col, int row) {
+        return cells[row * variant.getSize() + col];
+    }
+
+    /**
+     * Determines if the provided action is legal within this state: the col and
+     * row are on the board, that spot is not occupied, and the number is one the
+     * player to move may place.
+     * @param act The action being judged for legality
+     * @return true if act is legal from this state, false otherwise
+     */
+    public boolean isValidAction (T3Action act) {
+        int size = variant.getSize();
+        return act.col >= 0 && act.col < size &&
+               act.row >= 0 && act.row < size &&
+               variant.isMoveOf(oddTurn, act.move) &&
+               cells[act.row * size + act.col] == 0;
+    }
+
+    /**
+     * Returns the next state that would be generated from the calling one
+     * after taking the provided action.
+     * @param act The action to take from the given state.
+     * @return The next board state having taken the given action.
+     * @throws IllegalArgumentException if the given action is invalid
+     */
+    public T3VariantState getNextState (T3Action act) {
+        if (!isValidAction(act)) {
+            throw new IllegalArgumentException("Chosen action " + act + " is invalid!");
+        }
+        int[] next = cells.clone();
+        next[act.row * variant.getSize() + act.col] = act.move;
+        return new T3VariantState(variant, !oddTurn, next);
+    }
+
+    /**
+     * @return An array of the numbers that the player to move may place, in ascending order
+     */
+    public int[] getMoves () {
+        return variant.movesOf(oddTurn).clone();
+    }
+
+    /**
+     * @return Every legal action from this state, ordered by col, then row, then move number
+     */
+    public List<T3Action> getActions () {
+        List<T3Action> actions = new ArrayList<>();
+        int size = variant.getSize();
+        for (int col = 0; col < size; col++) {
+            for (int row = 0; row < size; row++) {
+                if (cells[row * size + col] != 0) { continue; }
+                for (int number : variant.movesOf(oddTurn)) {
+                    actions.add(new T3Action(col, row, number));
+                }
+            }
+        }
+        return actions;
+    }
+
+    /**
+     * Determines if any line of the board is filled and sums to the variant's
+     * win target, in which case whoever made the last move has won.
+     * @return true if the state is a winning terminal, false otherwise
+     */
+    public boolean isWin () {
+        for (int[] line : variant.lines()) {
+            int sum = 0;
+            boolean full = true;
+            for (int cell : line) {
+                sum += cells[cell];
+                full &= cells[cell] != 0;
+            }
+            if (full && sum == variant.getWinTarget()) { return true; }
+        }
+        return false;
+    }
+
+    /**
+     * @return true if every cell is filled and there is no winner, false otherwise
+     */
+    public boolean isTie () {
+        for (int number : cells) {
+            if (number == 0) { return false; }
+        }
+        return !isWin();
+    }
+
+    /**
+     * @return The cells of the board, by row then col; not to be modified
+     */
+    int[] cells () {
+        return cells;
+    }
+
+    @Override
+    public String toString () {
+        StringBuilder result = new StringBuilder();
+        int size = variant.getSize();
+        for (int row = 0; row < size; row++) {
+            result.append('[');
+            for (int col = 0; col < size; col++) {
+                result.append((col == 0) ? "" : ", ").append(getCell(col, row));
+            }
+            result.append("]\n");
+        }
+        return result.toString();
+    }
+
+    @Override
+    public boolean equals (Object other) {
+        if (other == this) { return true; }
+        if (!(other instanceof T3VariantState)) { return false; }
+        T3VariantState state = (T3VariantState) other;
+        return oddTurn == state.oddTurn && variant.equals(state.variant) && Arrays.equals(cells, state.cells);
+    }
+
+    @Override
+    public int hashCode () {
+        return (variant.hashCode() * 31 + Arrays.hashCode(cells)) * 2 + (oddTurn ? 1 : 0);
+    }
+
+}
@@ -0,0 +1,79 @@
+package test.t3;
+
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import main.t3.*;
+
+/**
+ * Benchmark harness for T3Player's search: makes a choice from the empty board
+ * for each player and from random boards partway through a game with moves
+ * searched in plain tie-break order, with move ordering, and with move
+ * ordering in parallel, and reports the boards searched and time taken by
+ * each. Run with optional arguments: POSITIONS SEED
+ */
+public class T3Benchmark {
+
+    public static void main (String[] args) {
+        int positions = (args.length > 0) ? Integer.parseInt(args[0]) : 200;
+        long seed = (args.length > 1) ? Long.parseLong(args[1]) : 282;
+        List<T3State> states = createStates(positions, new Random(seed));
+
+        System.out.println("================================");
+        System.out.println("Choices: 2 empty boards, " + (states.size() - 2) + " random boards");
+        System.out.println("================================");
+
+        T3Action[] unordered = run("Tie-break order", new T3Player(1 << 18, false), states),
+                   ordered = run("Wins, blocks, history", new T3Player(1 << 18, true), states);
+        int threads = Runtime.getRuntime().availableProcessors();
+        T3Action[] parallel = run("Parallel (" + threads + " threads)", new T3Player(1 << 18, new ForkJoinPool(threads)), states);
+        System.out.println("Choices that differ: " + countDifferent(unordered, ordered) + " ordered, " +
+                           countDifferent(unordered, parallel) + " parallel");
+    }
+
+    /**
+     * Makes a choice from every state with the given player and prints one line
+     * of the benchmark report.
+     *
+     * @return The choices made, in order.
+     */
+    private static T3Action[] run (String name, T3Player player, List<T3State> states) {
+        T3Action[] choices = new T3Action[states.size()];
+        long nodes = 0, emptyNodes = 0, started = System.nanoTime();
+        for (int i = 0; i < states.size(); i++) {
+            choices[i] = player.choose(states.get(i));
+            nodes += player.getNodeCount();
+            if (i < 2) { emptyNodes += player.getNodeCount(); }
+        }
+        System.out.printf("%-25s nodes %10d | empty boards %9d | time %8d ms%n",
+            name, nodes, emptyNodes, (System.nanoTime() - started) / 1_000_000);
+        return choices;
+    }
+
+    /**
+     * Creates the empty board for each player, followed by the given number of
+     * boards reached by playing 1 to 6 random moves, none of them already over.
+     */
+    private static List<T3State> createStates (int positions, Random rng) {
+        List<T3State> states = new ArrayList<>(List.of(new T3State(true), new T3State(false)));
+        while (states.size() < positions + 2) {
+            T3State state = new T3State(rng.nextBoolean());
+            for (int moves = 1 + rng.nextInt(6); moves > 0 && !state.isWin() && !state.isTie(); moves--) {
+                List<T3Action> actions = new ArrayList<>(state.getTransitions().keySet());
+                state = state.getNextState(actions.get(rng.nextInt(actions.size())));
+            }
+            if (!state.isWin() && !state.isTie()) {
+                states.add(state);
+            }
+        }
+        return states;
+    }
+
+    private static int countDifferent (T3Action[] a, T3Action[] b) {
+        int different = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (!Objects.equals(a[i], b[i])) { different++; }
+        }
+        return different;
+    }
+
+}
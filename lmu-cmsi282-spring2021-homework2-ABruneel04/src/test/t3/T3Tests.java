@@ -3,11 +3,16 @@ package test.t3;
 import static org.junit.Assert.*;
 import org.junit.AfterClass;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TestWatcher;
 import org.junit.rules.Timeout;
 import org.junit.runner.Description;
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
 import main.t3.*;
 
 /**
@@ -62,6 +67,18 @@ public class T3Tests {
         System.out.println("============================");
     }
     
+    // Solving every board takes longer than a test is given,
+    // so the tablebase is written once, for every test
+    static T3Tablebase tablebase;
+    
+    @BeforeClass
+    public static void writeTablebase () throws IOException {
+        Path file = Files.createTempFile("t3", ".tb");
+        file.toFile().deleteOnExit();
+        T3Tablebase.write(file);
+        tablebase = T3Tablebase.open(file);
+    }
+    
     // =================================================
     // Unit Tests
     // =================================================
@@ -144,6 +161,327 @@ public class T3Tests {
         assertEquals(new T3Action(0, 1, 2), a);
     }
     
+    /**
+     * Tests that the packed board state keeps the behavior
+     * of its public API
+     */
+    
+    @Test
+    public void T3StateTest_t0() {
+        int[][] state = {
+            {2, 1, 0},
+            {0, 5, 0},
+            {0, 0, 0}
+        };
+        T3State s = new T3State(false, state);
+        assertEquals("[2, 1, 0]\n[0, 5, 0]\n[0, 0, 0]\n", s.toString());
+        assertFalse(s.isValidAction(new T3Action(1, 0, 2))); // occupied
+        assertFalse(s.isValidAction(new T3Action(0, 3, 2))); // off the board
+        assertFalse(s.isValidAction(new T3Action(2, 2, 3))); // wrong parity
+        assertEquals(6 * 3, s.getTransitions().size());
+        
+        T3State next = s.getNextState(new T3Action(2, 2, 6));
+        assertTrue(next.isWin());
+        assertFalse(next.isTie());
+        assertEquals(6, next.getCell(2, 2));
+        assertEquals(0, s.getCell(2, 2));
+        assertEquals(new T3State(true, new int[][] {{2, 1, 0}, {0, 5, 0}, {0, 0, 6}}), next);
+        
+        T3State full = new T3State(true, new int[][] {{1, 2, 1}, {2, 1, 2}, {2, 1, 2}});
+        assertTrue(full.isTie());
+    }
+    
+    @Test
+    public void T3StateTest_t1() {
+        T3State s = new T3State(true, new int[][] {{2, 1, 0}, {0, 5, 0}, {0, 0, 4}});
+        // The same board, rotated a quarter turn clockwise and reflected top to bottom
+        T3State rotated = new T3State(true, new int[][] {{0, 0, 2}, {0, 5, 1}, {4, 0, 0}}),
+                reflected = new T3State(true, new int[][] {{0, 0, 4}, {0, 5, 0}, {2, 1, 0}});
+        assertEquals(s.getCanonical(), rotated.getCanonical());
+        assertEquals(s.getCanonical(), reflected.getCanonical());
+        assertEquals(s.getCanonical(), s.getCanonical().getCanonical());
+        assertNotEquals(s.getCanonical(), new T3State(false, new int[][] {{2, 1, 0}, {0, 5, 0}, {0, 0, 4}}).getCanonical());
+        assertNotEquals(s.getCanonical(), new T3State(true, new int[][] {{1, 2, 0}, {0, 5, 0}, {0, 0, 4}}).getCanonical());
+    }
+    
+    @Test
+    public void T3StateTest_t2() {
+        // Numbers the packed cells cannot hold are refused, not packed over
+        // their neighbors
+        for (int number : new int[] {7, -1}) {
+            try {
+                new T3State(true, new int[][] {{0, 0, 0}, {0, number, 0}, {0, 0, 0}});
+                fail(number + " was packed");
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+    
+    /**
+     * Tests that a T3Player's transposition table, kept from
+     * one choice to the next, never changes what it chooses,
+     * however small the table
+     */
+    
+    @Test
+    public void T3PlayerTest_tt() {
+        int[][][] states = {
+            {{2, 1, 0}, {0, 5, 0}, {0, 0, 0}},
+            {{0, 1, 0}, {0, 5, 0}, {0, 0, 6}},
+            {{3, 0, 0}, {0, 4, 0}, {0, 0, 1}},
+            {{0, 0, 5}, {0, 6, 0}, {0, 0, 0}},
+            {{0, 4, 0}, {2, 5, 0}, {0, 0, 1}}
+        };
+        T3Action[] expected = {
+            new T3Action(2, 2, 6), new T3Action(0, 0, 2), new T3Action(0, 1, 2),
+            new T3Action(0, 2, 2), new T3Action(1, 2, 4)
+        };
+        for (T3Player t3p : new T3Player[] {new T3Player(), new T3Player(16)}) {
+            for (int round = 0; round < 2; round++) {
+                for (int i = 0; i < states.length; i++) {
+                    assertEquals(expected[i], t3p.choose(new T3State(false, states[i])));
+                }
+            }
+        }
+    }
+    
+    /**
+     * Tests that the make/unmake search board makes the
+     * same moves, wins, and ties as the state it holds
+     */
+    
+    @Test
+    public void T3BoardTest_t0() {
+        T3State s = new T3State(true, new int[][] {{2, 1, 0}, {0, 5, 0}, {0, 0, 4}});
+        T3Board board = new T3Board(s);
+        int[] moves = new int[T3Board.MAX_MOVES];
+        // Odd to move on 5 empty cells, in col, row, then number order
+        assertEquals(15, board.generateMoves(moves));
+        assertEquals(new T3Action(0, 1, 1), T3Board.toAction(moves[0]));
+        assertEquals(new T3Action(0, 2, 5), T3Board.toAction(moves[5]));
+        assertEquals(new T3Action(2, 1, 5), T3Board.toAction(moves[14]));
+        for (int i = 0; i < 15; i++) {
+            board.make(moves[i]);
+            assertEquals(s.getNextState(T3Board.toAction(moves[i])), board.toState());
+            board.unmake(moves[i]);
+            assertEquals(s, board.toState());
+        }
+        board.make(T3Board.moveOf(2, 1, 3));
+        assertFalse(board.isOddTurn());
+        assertEquals(3, board.toState().getCell(2, 1));
+    }
+    
+    @Test
+    public void T3BoardTest_t1() {
+        // The board's running line sums and empty count agree with the state's
+        // own checks, move by move, over random games played out and taken back
+        Random rng = new Random(282);
+        int[] moves = new int[T3Board.MAX_MOVES], played = new int[9];
+        for (int game = 0; game < 500; game++) {
+            T3Board board = new T3Board(new T3State(game % 2 == 0));
+            int ply = 0;
+            while (!board.isWin() && !board.isTie()) {
+                int count = board.generateMoves(moves);
+                board.make(played[ply++] = moves[rng.nextInt(count)]);
+                T3State state = board.toState();
+                assertEquals(state.isWin(), board.isWin());
+                assertEquals(state.isTie(), board.isTie());
+            }
+            while (ply > 0) {
+                board.unmake(played[--ply]);
+                assertFalse(board.isWin());
+                assertFalse(board.isTie());
+            }
+            assertEquals(new T3State(game % 2 == 0), board.toState());
+        }
+    }
+    
+    /**
+     * Tests that a tablebase chooses just as a search does,
+     * and that a file which is not a tablebase is refused
+     * rather than read as one
+     */
+    
+    @Test(expected = IOException.class)
+    public void T3TablebaseTest_t0() throws IOException {
+        Path file = Files.createTempFile("t3", ".tb");
+        try {
+            Files.write(file, new byte[] {'T', '3', 'T', 'B', 0, 0, 0, 1});
+            T3Tablebase.open(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+    
+    @Test
+    public void T3TablebaseTest_t1() {
+        // Every board met over random games, on either turn, is given the
+        // action a search chooses and the value that action leads to
+        Random rng = new Random(282);
+        T3Player searched = new T3Player(), lookedUp = new T3Player(tablebase);
+        int checked = 0;
+        for (int game = 0; checked < 3000; game++) {
+            T3State s = new T3State(game % 2 == 0);
+            // The empty boards' searches are the slowest, and are left to the
+            // tests above
+            List<T3Action> first = new ArrayList<>(s.getTransitions().keySet());
+            s = s.getNextState(first.get(rng.nextInt(first.size())));
+            while (!s.isWin() && !s.isTie()) {
+                T3Action act = searched.choose(s);
+                assertEquals(act, lookedUp.choose(s));
+                T3State next = s.getNextState(act);
+                assertEquals(next.isWin() ? 1 : -tablebase.getValue(next), tablebase.getValue(s));
+                checked++;
+                List<T3Action> actions = new ArrayList<>(s.getTransitions().keySet());
+                s = s.getNextState(actions.get(rng.nextInt(actions.size())));
+            }
+            assertNull(tablebase.getBestAction(s));
+            assertEquals(s.isWin() ? -1 : 0, tablebase.getValue(s));
+        }
+        // Odd to move, though odd has already placed two numbers to even's none
+        assertNull(tablebase.getBestAction(new T3State(true, new int[][] {{1, 3, 0}, {0, 0, 0}, {0, 0, 0}})));
+    }
+    
+    /**
+     * Tests that ordering moves changes how much a
+     * T3Player searches, but never what it chooses
+     */
+    
+    @Test
+    public void T3PlayerTest_order() {
+        T3State s = new T3State(true, new int[][] {{0, 0, 0}, {0, 0, 0}, {0, 0, 0}});
+        T3Player ordered = new T3Player(1 << 16, true), unordered = new T3Player(1 << 16, false);
+        assertEquals(unordered.choose(s), ordered.choose(s));
+        assertTrue(ordered.getNodeCount() < unordered.getNodeCount());
+        s = new T3State(false, new int[][] {{0, 0, 0}, {0, 3, 0}, {0, 0, 0}});
+        assertEquals(unordered.choose(s), ordered.choose(s));
+        assertTrue(ordered.getNodeCount() < unordered.getNodeCount());
+    }
+    
+    /**
+     * Tests that searching in parallel on a pool never
+     * changes what a T3Player chooses
+     */
+    
+    @Test
+    public void T3PlayerTest_parallel() {
+        T3Player alone = new T3Player(1 << 16), parallel = new T3Player(1 << 16, new ForkJoinPool(4));
+        T3State[] states = {
+            new T3State(true, new int[][] {{0, 0, 0}, {0, 0, 0}, {0, 0, 0}}),
+            new T3State(false, new int[][] {{0, 0, 0}, {0, 3, 0}, {0, 0, 0}}),
+            new T3State(true, new int[][] {{2, 1, 0}, {0, 5, 0}, {0, 0, 4}}),
+            new T3State(false, new int[][] {{0, 0, 0}, {0, 0, 0}, {1, 0, 0}})
+        };
+        for (T3State s : states) {
+            assertEquals(alone.choose(s), parallel.choose(s));
+        }
+    }
+    
+    /**
+     * Tests that one T3Player may be shared between
+     * games that choose at once
+     */
+    
+    @Test
+    public void T3PlayerTest_shared() throws Exception {
+        T3State[] states = {
+            new T3State(true, new int[][] {{0, 0, 0}, {0, 3, 2}, {0, 0, 0}}),
+            new T3State(false, new int[][] {{0, 0, 0}, {0, 3, 0}, {0, 0, 0}}),
+            new T3State(true, new int[][] {{2, 1, 0}, {0, 5, 0}, {0, 0, 4}}),
+            new T3State(false, new int[][] {{0, 0, 0}, {6, 0, 0}, {1, 0, 0}})
+        };
+        T3Action[] expected = new T3Action[states.length];
+        for (int i = 0; i < states.length; i++) {
+            expected[i] = new T3Player().choose(states[i]);
+        }
+        T3Player shared = new T3Player(1 << 12);
+        ExecutorService sessions = Executors.newFixedThreadPool(16);
+        try {
+            List<Future<T3Action>> choices = new ArrayList<>();
+            for (int i = 0; i < 256; i++) {
+                T3State s = states[i % states.length];
+                choices.add(sessions.submit(() -> shared.choose(s)));
+            }
+            for (int i = 0; i < choices.size(); i++) {
+                assertEquals(expected[i % states.length], choices.get(i).get());
+            }
+        } finally {
+            sessions.shutdownNow();
+        }
+    }
+    
+    /**
+     * Tests that a variant's states play by its rules,
+     * and the standard variant exactly as T3State does
+     */
+    
+    @Test
+    public void T3VariantTest_t0() {
+        // The standard variant plays exactly as T3State does
+        Random rng = new Random(282);
+        for (int game = 0; game < 200; game++) {
+            T3State s = new T3State(game % 2 == 0);
+            T3VariantState v = new T3VariantState(T3Variant.STANDARD, game % 2 == 0);
+            while (!s.isWin() && !s.isTie()) {
+                List<T3Action> actions = v.getActions();
+                assertEquals(new ArrayList<>(s.getTransitions().keySet()), actions);
+                T3Action act = actions.get(rng.nextInt(actions.size()));
+                s = s.getNextState(act);
+                v = v.getNextState(act);
+                assertEquals(s.isWin(), v.isWin());
+                assertEquals(s.isTie(), v.isTie());
+            }
+        }
+        // A 4 x 4 line only wins once it is full
+        T3Variant four = new T3Variant(4, 8, 18);
+        assertEquals(10, four.getLineCount());
+        assertFalse(new T3VariantState(four, true, new int[][] {{8, 8, 2, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}}).isWin());
+        assertTrue(new T3VariantState(four, true, new int[][] {{0, 0, 0, 1}, {0, 0, 5, 0}, {0, 7, 0, 0}, {5, 0, 0, 0}}).isWin());
+    }
+    
+    /**
+     * Tests that a T3VariantPlayer finds wins and blocks,
+     * and keeps to its time budget where it cannot
+     * search to the end
+     */
+    
+    @Test
+    public void T3VariantPlayerTest_t0() {
+        T3Variant four = new T3Variant(4, 8, 18);
+        T3VariantPlayer player = new T3VariantPlayer(four, T3Evaluator.THREATS, 1000);
+        // Even to move wins at once
+        T3VariantState s = new T3VariantState(four, false, new int[][] {{2, 4, 6, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}});
+        assertEquals(new T3Action(3, 0, 6), player.choose(s));
+        // Odd to move must block even's win, or lose at once
+        s = new T3VariantState(four, true, new int[][] {{0, 0, 0, 0}, {2, 4, 6, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}});
+        T3Action block = player.choose(s);
+        assertEquals(3, block.col);
+        assertEquals(1, block.row);
+        // Once the game is over there is nothing to search
+        s = new T3VariantState(four, false, new int[][] {{0, 0, 0, 1}, {0, 0, 5, 0}, {0, 7, 0, 0}, {5, 0, 0, 0}});
+        assertNull(player.choose(s));
+        assertEquals(0, player.getLastDepth());
+        assertTrue(player.getLastScore() < -T3Evaluator.MAX_SCORE);
+        // On the standard board it searches to the end, and finds the forced win
+        T3VariantPlayer standard = new T3VariantPlayer(T3Variant.STANDARD, T3Evaluator.NONE, 60_000);
+        standard.choose(new T3VariantState(T3Variant.STANDARD, false));
+        assertTrue(standard.getLastScore() > T3Evaluator.MAX_SCORE);
+    }
+    
+    @Test
+    public void T3VariantPlayerTest_budget() {
+        // A 5 x 5 tree cannot be searched to the end, so the budget decides
+        T3Variant five = new T3Variant(5, 10, 28);
+        T3VariantPlayer player = new T3VariantPlayer(five, T3Evaluator.THREATS, 200);
+        T3VariantState s = new T3VariantState(five, true);
+        long started = System.nanoTime();
+        T3Action act = player.choose(s);
+        assertTrue((System.nanoTime() - started) / 1_000_000 < 2000);
+        assertTrue(s.isValidAction(act));
+        assertTrue(player.getLastDepth() >= 1 && player.getLastDepth() < 25);
+    }
+    
     // ... more for you to test!
     
     @Test